@@ -0,0 +1,148 @@
+package benchmarks;
+
+import automail.Building;
+import automail.Clock;
+import automail.EventSink;
+import automail.IMailDelivery;
+import automail.MailItem;
+import automail.Robot;
+import automail.Simulation;
+import automail.SimulationContext;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import strategies.Automail;
+import strategies.IMailPool;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Filling a mail pool and loading robots from it, for each pool
+ * implementation against the same mail.
+ * The items counter gives items per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MailPoolBenchmark {
+
+    @Param({"MyMailPool", "CompactMailPool"})
+    public String mailPool;
+
+    @Param({"10", "100"})
+    public int floors;
+
+    @Param({"1000", "100000"})
+    public int items;
+
+    @Param({"false", "true"})
+    public boolean fragile;
+
+    @Param({"Careful,Standard,Standard", "Big,Careful,Weak,Weak"})
+    public String robots;
+
+    private MailItem[] mail;
+
+    /**
+     * Counts the items handled, reported per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Handled {
+        public long items;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            items = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        mail = Workloads.mail(items, floors, fragile, false);
+    }
+
+    /**
+     * @return a new pool with the fleet to load from it
+     */
+    private Automail newFleet() throws Throwable {
+        SimulationContext context = new SimulationContext(new Building(floors),
+                new Clock(1), EventSink.NONE);
+        IMailDelivery delivery = mailItem -> { };
+        List<Simulation.RobotType> fleet = Arrays.stream(robots.split(",")).
+                map(Simulation.RobotType::valueOf).
+                collect(Collectors.toList());
+        return new Automail(delivery, mailPool, fleet, context);
+    }
+
+    /**
+     * Adds every item to an empty pool.
+     */
+    @Benchmark
+    public IMailPool addToPool(Handled handled) throws Throwable {
+        // Register the fleet so no item is refused
+        Automail automail = newFleet();
+        for (int i = 0; i < automail.ROBOTS.length; i++) {
+            automail.MAIL_POOL.registerWaiting((Robot) automail.ROBOTS[i]);
+        }
+        for (MailItem mailItem : mail) {
+            automail.MAIL_POOL.addToPool(mailItem);
+        }
+        handled.items += mail.length;
+        return automail.MAIL_POOL;
+    }
+
+    /**
+     * Adds every item to an empty pool, then loads the fleet over and over
+     * until the pool is empty. Robots are emptied and registered again
+     * straight away, so only the pool's work is measured.
+     */
+    @Benchmark
+    public IMailPool fillStorageTube(Handled handled) throws Throwable {
+        Automail automail = newFleet();
+        IMailPool pool = automail.MAIL_POOL;
+        Robot[] fleet = new Robot[automail.ROBOTS.length];
+        for (int i = 0; i < fleet.length; i++) {
+            fleet[i] = (Robot) automail.ROBOTS[i];
+            pool.registerWaiting(fleet[i]);
+        }
+        for (MailItem mailItem : mail) {
+            pool.addToPool(mailItem);
+        }
+        int loaded = 0;
+        while (loaded < mail.length) {
+            pool.step();
+            int before = loaded;
+            for (Robot robot : fleet) {
+                if (!robot.isReceivedDispatch()) continue;
+                pool.deregisterWaiting(robot);
+                while (!robot.getTube().isEmpty()) {
+                    robot.getTube().pop();
+                    loaded++;
+                }
+                robot.setReceivedDispatch(false);
+                pool.registerWaiting(robot);
+            }
+            // Items no robot of the fleet can take stay behind
+            if (loaded == before) break;
+        }
+        handled.items += loaded;
+        return pool;
+    }
+}
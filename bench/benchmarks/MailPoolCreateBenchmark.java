@@ -0,0 +1,44 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import strategies.IMailPool;
+import strategies.MailPools;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of making the mail pool at the start of a run: looking the class
+ * up by name and calling its constructor reflectively, as runs used to,
+ * against asking the strategy registry.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MailPoolCreateBenchmark {
+
+    @Param({"MyMailPool", "CompactMailPool"})
+    public String mailPool;
+
+    @Benchmark
+    public IMailPool reflective() throws Exception {
+        return (IMailPool) Class.forName("strategies." + mailPool).
+                getDeclaredConstructor().newInstance();
+    }
+
+    @Benchmark
+    public IMailPool registry() throws Exception {
+        return MailPools.create(mailPool);
+    }
+}
@@ -0,0 +1,131 @@
+package benchmarks;
+
+import automail.BigRobot;
+import automail.Building;
+import automail.CarefulRobot;
+import automail.Clock;
+import automail.EventSink;
+import automail.MailItem;
+import automail.Robot;
+import automail.SimulationContext;
+import automail.StandardRobot;
+import automail.WeakRobot;
+import exceptions.TubeFullException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import strategies.IMailPool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One robot stepping through endless delivery trips. A stand-in pool hands
+ * it a full tube from a fixed set of items whenever it waits, so only the
+ * robot's own work is measured; run with -prof gc to see what each step
+ * allocates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RobotStepBenchmark {
+
+    @Param({"Standard", "Careful", "Weak", "Big"})
+    public String robotType;
+
+    @Param({"10", "100"})
+    public int floors;
+
+    private Robot robot;
+    private IMailPool pool;
+
+    /**
+     * Loads the robot with the next items of a fixed cycle each time it
+     * registers.
+     */
+    private static class RefillingPool implements IMailPool {
+        private final MailItem[] mail;
+        private int next;
+        private Robot waiting;
+
+        RefillingPool(MailItem[] mail) {
+            this.mail = mail;
+        }
+
+        @Override
+        public void addToPool(MailItem mailItem) {
+        }
+
+        @Override
+        public void step() {
+            if (waiting == null || !waiting.getTube().isEmpty()) return;
+            try {
+                for (int i = 0; i < waiting.getMaxItems(); i++) {
+                    // Careful robots take at most one fragile item
+                    MailItem mailItem = mail[next];
+                    next = (next + 1) % mail.length;
+                    if (mailItem.getFragile() && i > 0) continue;
+                    waiting.getTube().addItem(mailItem);
+                }
+            } catch (TubeFullException e) {
+                throw new IllegalStateException(e);
+            }
+            waiting.dispatch();
+        }
+
+        @Override
+        public void registerWaiting(Robot robot) {
+            waiting = robot;
+        }
+
+        @Override
+        public void deregisterWaiting(Robot robot) {
+            waiting = null;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        SimulationContext context = new SimulationContext(new Building(floors),
+                new Clock(1), EventSink.NONE);
+        boolean careful = robotType.equals("Careful");
+        boolean weak = robotType.equals("Weak");
+        RefillingPool pool = new RefillingPool(Workloads.mail(1024, floors,
+                careful, weak));
+        switch (robotType) {
+            case "Careful":
+                robot = new CarefulRobot(mailItem -> { }, pool, context);
+                break;
+            case "Weak":
+                robot = new WeakRobot(mailItem -> { }, pool, context);
+                break;
+            case "Big":
+                robot = new BigRobot(mailItem -> { }, pool, context);
+                break;
+            default:
+                robot = new StandardRobot(mailItem -> { }, pool, context);
+                break;
+        }
+        this.pool = pool;
+    }
+
+    /**
+     * One tick of the pool and the robot.
+     */
+    @Benchmark
+    public int step() throws Throwable {
+        pool.step();
+        robot.step();
+        return robot.getCurrentFloor();
+    }
+}
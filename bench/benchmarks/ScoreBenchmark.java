@@ -0,0 +1,76 @@
+package benchmarks;
+
+import automail.ScoreTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of scoring one delivery, calling Math.pow and Math.sqrt as the
+ * simulation used to against looking the terms up in a ScoreTable. Both
+ * score the same seeded deliveries: latencies up to maxLatency, one in six
+ * with a priority level from 10 to 100.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ScoreBenchmark {
+
+    private static final int DELIVERIES = 4096;
+
+    @Param({"100", "10000"})
+    public int maxLatency;
+
+    private int[] latency;
+    private int[] priority;
+    private ScoreTable table;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(Workloads.SEED);
+        latency = new int[DELIVERIES];
+        priority = new int[DELIVERIES];
+        for (int i = 0; i < DELIVERIES; i++) {
+            latency[i] = random.nextInt(maxLatency);
+            priority[i] = random.nextInt(6) == 0 ?
+                    10 * (1 + random.nextInt(10)) : 0;
+        }
+        table = new ScoreTable();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DELIVERIES)
+    public double direct() {
+        double total = 0;
+        for (int i = 0; i < DELIVERIES; i++) {
+            total += Math.pow(latency[i], ScoreTable.PENALTY) *
+                    (1 + Math.sqrt(priority[i]));
+        }
+        return total;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DELIVERIES)
+    public double table() {
+        double total = 0;
+        for (int i = 0; i < DELIVERIES; i++) {
+            total += table.score(latency[i], priority[i]);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,84 @@
+package benchmarks;
+
+import automail.EventSink;
+import automail.Simulation;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole simulation run, from generating the mail to the last delivery.
+ * The items counter gives delivered items per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SimulationBenchmark {
+
+    @Param({"10", "100"})
+    public int floors;
+
+    @Param({"200", "5000"})
+    public int mailToCreate;
+
+    @Param({"false", "true"})
+    public boolean fragile;
+
+    @Param({"Careful,Standard,Standard", "Big,Careful,Weak,Weak"})
+    public String robots;
+
+    @Param({"MyMailPool", "CompactMailPool"})
+    public String mailPool;
+
+    private static final PrintStream SILENT =
+            new PrintStream(OutputStream.nullOutputStream());
+
+    private Properties properties;
+
+    /**
+     * Counts the items delivered, reported per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Delivered {
+        public long items;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            items = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        properties = Workloads.simulation(floors, mailToCreate, fragile,
+                robots, mailPool);
+    }
+
+    @Benchmark
+    public double run(Delivered delivered) throws Throwable {
+        Simulation simulation = new Simulation(properties, Workloads.SEED,
+                SILENT, EventSink.NONE);
+        double score = simulation.run();
+        delivered.items += simulation.getDelivered();
+        return score;
+    }
+}
@@ -0,0 +1,80 @@
+package benchmarks;
+
+import automail.Building;
+import automail.MailItem;
+import automail.PriorityMailItem;
+import automail.Simulation;
+import automail.WeakRobot;
+
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Seeded workloads shared by the benchmarks, so every mail pool and robot
+ * is measured against the same mail.
+ */
+public final class Workloads {
+
+    /** The seed every workload is built from */
+    public static final int SEED = 11111;
+
+    private Workloads() {
+    }
+
+    /**
+     * Settings for a whole simulation run.
+     *
+     * @param floors       the number of floors
+     * @param mailToCreate roughly how many mail items to create
+     * @param fragile      whether fragile mail is created
+     * @param robots       the fleet, as in automail.properties
+     * @param mailPool     the mail pool strategy
+     * @return the settings
+     */
+    public static Properties simulation(int floors, int mailToCreate,
+                                        boolean fragile, String robots,
+                                        String mailPool) {
+        Properties properties = Simulation.defaultProperties();
+        properties.setProperty("Floors", String.valueOf(floors));
+        properties.setProperty("Fragile", String.valueOf(fragile));
+        properties.setProperty("Mail_to_Create", String.valueOf(mailToCreate));
+        // Spread arrivals so the fleet is kept busy but not swamped
+        properties.setProperty("Last_Delivery_Time",
+                String.valueOf(Math.max(100, mailToCreate / 2)));
+        properties.setProperty("Robots", robots);
+        properties.setProperty("MailPool", mailPool);
+        properties.setProperty("Event_Driven", "false");
+        return properties;
+    }
+
+    /**
+     * Mail items drawn like MailGenerator draws them.
+     *
+     * @param count   how many items to make
+     * @param floors  the number of floors
+     * @param fragile whether fragile items are made
+     * @param light   whether only items a weak robot can carry are made
+     * @return the items, numbered from 0
+     */
+    public static MailItem[] mail(int count, int floors, boolean fragile,
+                                  boolean light) {
+        Random random = new Random(SEED);
+        MailItem[] items = new MailItem[count];
+        for (int i = 0; i < count; i++) {
+            int destination = Building.LOWEST_FLOOR + random.nextInt(floors);
+            int weight = (int) (200 + Math.abs(random.nextGaussian()) * 700);
+            weight = Math.min(weight, light ?
+                    WeakRobot.WEAK_ROBOT_MAX_WEIGHT - 1 : 5000);
+            boolean isFragile = fragile && random.nextInt(8) == 0;
+            int arrival = 1 + i / 8;
+            if (random.nextInt(6) == 0) {
+                items[i] = new PriorityMailItem(i, destination, arrival,
+                        weight, isFragile, 10 * (1 + random.nextInt(10)));
+            } else {
+                items[i] = new MailItem(i, destination, arrival, weight,
+                        isFragile);
+            }
+        }
+        return items;
+    }
+}
@@ -0,0 +1,49 @@
+package automail;
+
+/**
+ * A moving average of how many items arrive per tick, for mail which is not
+ * known ahead of time. Each tick counts for a sixteenth, so the average
+ * follows a change in the rate within a few dozen ticks; ticks nobody
+ * counted, such as skipped ones, count as ticks with no arrivals.
+ */
+class ArrivalRate {
+
+    /** How much the latest tick counts towards the average */
+    private static final double WEIGHT = 1.0 / 16;
+
+    private double perTick;
+    /** The last tick counted */
+    private int time;
+
+    /**
+     * Counts the items arriving at a tick. Ticks must be counted in order.
+     *
+     * @param now      the tick
+     * @param arrivals how many items arrived
+     */
+    void count(int now, int arrivals) {
+        if (now <= time) {
+            // The same tick again: add to it
+            perTick += WEIGHT * arrivals;
+            return;
+        }
+        perTick = decayed(now - 1) * (1 - WEIGHT) + WEIGHT * arrivals;
+        time = now;
+    }
+
+    /**
+     * Gets the average at a tick, taking any ticks since the last one counted
+     * as empty.
+     *
+     * @param now the tick
+     * @return the items arriving per tick
+     */
+    double perTick(int now) {
+        return decayed(now);
+    }
+
+    private double decayed(int now) {
+        if (now <= time) return perTick;
+        return perTick * Math.pow(1 - WEIGHT, now - time);
+    }
+}
@@ -0,0 +1,244 @@
+package automail;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records events into a preallocated ring buffer and writes them out as text
+ * in batches on a background thread, so the simulation thread only copies a
+ * few fields per event.
+ * The ring has a single producer (the simulation thread) and a single
+ * consumer (the writer thread); the producer waits if the writer falls a
+ * whole ring behind.
+ */
+public class AsyncEventSink implements EventSink {
+
+    /** The kinds of event held in the ring */
+    private static final byte ARRIVED = 0;
+    private static final byte RETURNED = 1;
+    private static final byte STATE = 2;
+    private static final byte ROUTE = 3;
+    private static final byte DELIVERED = 4;
+
+    private static final Robot.RobotState[] STATES = Robot.RobotState.values();
+
+    /** How long a side with nothing to do parks before looking again */
+    private static final long PARK_NANOS = 100_000;
+
+    private final int mask;
+    private final byte[] kind;
+    private final int[] time;
+    private final String[] robotId;
+    private final int[] tubeSize;
+    private final int[] tubeCapacity;
+    private final byte[] from;
+    private final byte[] to;
+    private final MailItem[] mailItem;
+
+    /** The number of events recorded so far */
+    private final AtomicLong tail = new AtomicLong();
+    /** The number of events written out so far */
+    private final AtomicLong head = new AtomicLong();
+
+    private final Writer writer;
+    private final Thread drainer;
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    /**
+     * Instantiates a new AsyncEventSink writing to a file.
+     *
+     * @param file     the file to write the events to
+     * @param capacity the number of events the ring holds, rounded up to a
+     *                 power of two
+     * @throws IOException if the file can not be opened
+     */
+    public AsyncEventSink(Path file, int capacity) throws IOException {
+        this(Files.newBufferedWriter(file, StandardCharsets.UTF_8), capacity);
+    }
+
+    /**
+     * Instantiates a new AsyncEventSink.
+     *
+     * @param writer   where to write the events
+     * @param capacity the number of events the ring holds, rounded up to a
+     *                 power of two
+     */
+    public AsyncEventSink(Writer writer, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.kind = new byte[size];
+        this.time = new int[size];
+        this.robotId = new String[size];
+        this.tubeSize = new int[size];
+        this.tubeCapacity = new int[size];
+        this.from = new byte[size];
+        this.to = new byte[size];
+        this.mailItem = new MailItem[size];
+        this.writer = writer instanceof BufferedWriter ? writer :
+                new BufferedWriter(writer);
+        this.drainer = new Thread(this::drain, "event-log");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    /**
+     * Claims the next slot of the ring, waiting for the writer if the ring
+     * is full.
+     *
+     * @return the index of the slot
+     */
+    private int claim() {
+        long next = tail.get();
+        while (next - head.get() > mask) {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return (int) (next & mask);
+    }
+
+    /**
+     * Makes the event in the claimed slot visible to the writer.
+     */
+    private void publish() {
+        tail.lazySet(tail.get() + 1);
+    }
+
+    private void record(byte eventKind, int eventTime, MailItem item) {
+        int slot = claim();
+        kind[slot] = eventKind;
+        time[slot] = eventTime;
+        mailItem[slot] = item;
+        publish();
+    }
+
+    @Override
+    public void mailArrived(int time, MailItem mailItem) {
+        record(ARRIVED, time, mailItem);
+    }
+
+    @Override
+    public void mailReturned(int time, MailItem mailItem) {
+        record(RETURNED, time, mailItem);
+    }
+
+    @Override
+    public void stateChanged(int time, String robotId, int tubeSize,
+                             int tubeCapacity, Robot.RobotState from,
+                             Robot.RobotState to) {
+        int slot = claim();
+        this.kind[slot] = STATE;
+        this.time[slot] = time;
+        this.robotId[slot] = robotId;
+        this.tubeSize[slot] = tubeSize;
+        this.tubeCapacity[slot] = tubeCapacity;
+        this.from[slot] = (byte) from.ordinal();
+        this.to[slot] = (byte) to.ordinal();
+        publish();
+    }
+
+    @Override
+    public void routeSet(int time, String robotId, int tubeSize,
+                         int tubeCapacity, MailItem mailItem) {
+        int slot = claim();
+        this.kind[slot] = ROUTE;
+        this.time[slot] = time;
+        this.robotId[slot] = robotId;
+        this.tubeSize[slot] = tubeSize;
+        this.tubeCapacity[slot] = tubeCapacity;
+        this.mailItem[slot] = mailItem;
+        publish();
+    }
+
+    @Override
+    public void delivered(int time, MailItem mailItem) {
+        record(DELIVERED, time, mailItem);
+    }
+
+    /**
+     * Writes out the events as they come in, until the sink is closed and
+     * the ring is empty.
+     */
+    private void drain() {
+        try {
+            while (true) {
+                long start = head.get();
+                long end = tail.get();
+                if (start == end) {
+                    if (closed && tail.get() == start) break;
+                    writer.flush();
+                    LockSupport.parkNanos(PARK_NANOS);
+                    continue;
+                }
+                for (long i = start; i < end; i++) {
+                    writer.write(format((int) (i & mask)));
+                }
+                head.lazySet(end);
+            }
+            writer.flush();
+        } catch (IOException e) {
+            failure = e;
+            // Let the simulation carry on rather than wait forever
+            head.set(Long.MAX_VALUE / 2);
+        }
+    }
+
+    /**
+     * Formats the event in a slot and lets go of its references.
+     *
+     * @param slot the index of the slot
+     * @return the text of the event
+     */
+    private String format(int slot) {
+        String line;
+        switch (kind[slot]) {
+            case ARRIVED:
+                line = EventFormat.mailArrived(time[slot], mailItem[slot]);
+                break;
+            case RETURNED:
+                line = EventFormat.mailReturned(time[slot], mailItem[slot]);
+                break;
+            case STATE:
+                line = EventFormat.stateChanged(time[slot], robotId[slot],
+                        tubeSize[slot], tubeCapacity[slot], STATES[from[slot]],
+                        STATES[to[slot]]);
+                break;
+            case ROUTE:
+                line = EventFormat.routeSet(time[slot], robotId[slot],
+                        tubeSize[slot], tubeCapacity[slot], mailItem[slot]);
+                break;
+            default:
+                line = EventFormat.delivered(time[slot], mailItem[slot]);
+                break;
+        }
+        mailItem[slot] = null;
+        robotId[slot] = null;
+        return line;
+    }
+
+    /**
+     * Waits for every recorded event to be written out, then closes the
+     * output.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            drainer.join();
+            writer.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            if (failure == null) failure = e;
+        }
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package automail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import exceptions.ExcessiveDeliveryException;
+import exceptions.FragileItemBrokenException;
+import exceptions.InvalidRobotTypeException;
+import exceptions.ItemTooHeavyException;
+import exceptions.NoValidRobotsAvailableException;
+
+/**
+ * Runs the simulation for many seeds at once, spread over the available
+ * cores, and reports the score and final delivery time of each seed along
+ * with their mean and percentiles.
+ *
+ * Usage: BatchSimulation runs [firstSeed] [threads]
+ * The seeds used are firstSeed, firstSeed + 1, ... and firstSeed defaults to
+ * the Seed property (or 0). All other settings come from automail.properties.
+ */
+public class BatchSimulation {
+
+    /**
+     * The outcome of the run for one seed.
+     */
+    public static class Result {
+        /** The seed of the run, or -1 if it was randomised */
+        public final int seed;
+        /** The final score, or NaN if the run could not complete */
+        public final double score;
+        /** The final delivery time, or -1 if the run could not complete */
+        public final int finalTime;
+        /** The number of items delivered */
+        public final int delivered;
+        /** The number of trips the robots set off on */
+        public final int trips;
+        /** The number of floors the robots moved */
+        public final long floorsTravelled;
+
+        /**
+         * Instantiates a new Result.
+         *
+         * @param seed      the seed of the run
+         * @param score     the final score
+         * @param finalTime the final delivery time
+         * @param delivered the number of items delivered
+         * @param trips     the number of trips the robots set off on
+         * @param floorsTravelled the number of floors the robots moved
+         */
+        public Result(int seed, double score, int finalTime, int delivered,
+                      int trips, long floorsTravelled) {
+            this.seed = seed;
+            this.score = score;
+            this.finalTime = finalTime;
+            this.delivered = delivered;
+            this.trips = trips;
+            this.floorsTravelled = floorsTravelled;
+        }
+
+        /**
+         * @return the items delivered per tick
+         */
+        public double throughput() {
+            return finalTime > 0 ? (double) delivered / finalTime : 0;
+        }
+
+        /**
+         * @return the items delivered per trip
+         */
+        public double itemsPerTrip() {
+            return trips > 0 ? (double) delivered / trips : 0;
+        }
+
+        /**
+         * @return the floors moved per trip
+         */
+        public double floorsPerTrip() {
+            return trips > 0 ? (double) floorsTravelled / trips : 0;
+        }
+
+        /**
+         * @return whether the run completed
+         */
+        public boolean completed() {
+            return finalTime >= 0;
+        }
+    }
+
+    static final PrintStream SILENT =
+            new PrintStream(OutputStream.nullOutputStream());
+
+    public static void main(String[] args) throws IOException,
+            InterruptedException, ExecutionException {
+        if (args.length == 0) {
+            System.out.println("Usage: BatchSimulation runs [firstSeed] " +
+                    "[threads]");
+            return;
+        }
+        Properties automailProperties = Simulation.loadProperties();
+        int runs = Integer.parseInt(args[0]);
+        String seedProp = automailProperties.getProperty("Seed");
+        int firstSeed = args.length > 1 ? Integer.parseInt(args[1]) :
+                seedProp == null ? 0 : Integer.parseInt(seedProp);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) :
+                Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("Runs: %d | First seed: %d | Threads: %d%n", runs,
+                firstSeed, threads);
+        List<Result> results = run(automailProperties, firstSeed, runs,
+                threads);
+        for (Result result : results) {
+            if (result.completed()) {
+                System.out.printf("Seed: %d | Final Delivery time: %d | " +
+                        "Final Score: %.2f%n", result.seed, result.finalTime,
+                        result.score);
+            } else {
+                System.out.printf("Seed: %d | Simulation unable to complete.%n",
+                        result.seed);
+            }
+        }
+        printSummary(results);
+    }
+
+    /**
+     * Runs the simulation once for each of the seeds firstSeed, firstSeed + 1
+     * and so on, in parallel.
+     *
+     * @param automailProperties the settings shared by all runs
+     * @param firstSeed          the seed of the first run
+     * @param runs               how many runs to make
+     * @param threads            how many runs may go on at once
+     * @return the results, in seed order
+     */
+    public static List<Result> run(Properties automailProperties,
+                                   int firstSeed, int runs, int threads)
+            throws InterruptedException, ExecutionException {
+        Properties runProperties = concurrentRun(automailProperties);
+        List<Callable<Result>> tasks = new ArrayList<>(runs);
+        for (int i = 0; i < runs; i++) {
+            int seed = firstSeed + i;
+            tasks.add(() -> runOne(runProperties, seed));
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<Result> results = new ArrayList<>(runs);
+            for (Future<Result> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Copies the settings for one of several runs going on at once. Each run
+     * still publishes its live metrics over JMX under a name of its own, but
+     * none serves them over HTTP, as only one could have Live_Metrics_Port.
+     *
+     * @param automailProperties the settings shared by all runs
+     * @return the settings for one run
+     */
+    static Properties concurrentRun(Properties automailProperties) {
+        Properties runProperties = new Properties();
+        runProperties.putAll(automailProperties);
+        runProperties.setProperty("Live_Metrics_Port", "0");
+        return runProperties;
+    }
+
+    /**
+     * Runs the simulation for one seed, without reporting its progress.
+     * A run which fails as the simulation reports failing, such as an item
+     * nobody can carry, is a result that did not complete; anything else,
+     * such as bad settings, is thrown on.
+     *
+     * @param automailProperties the settings of the run
+     * @param seed               the seed of the run, or null to randomise
+     * @return the result of the run
+     * @throws UncheckedIOException     if the settings name a file which can
+     *                                  not be read
+     * @throws IllegalArgumentException if the settings name an unknown mail
+     *                                  pool or robot type
+     */
+    public static Result runOne(Properties automailProperties, Integer seed) {
+        Simulation simulation = new Simulation(automailProperties, seed,
+                SILENT, EventSink.NONE);
+        int seedNumber = seed == null ? -1 : seed;
+        try {
+            double score = simulation.run();
+            return new Result(seedNumber, score, simulation.getTime(),
+                    simulation.getDelivered(), simulation.getTrips(),
+                    simulation.getFloorsTravelled());
+        } catch (ExcessiveDeliveryException | ItemTooHeavyException |
+                FragileItemBrokenException | NoValidRobotsAvailableException e) {
+            return new Result(seedNumber, Double.NaN, -1, 0, 0, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ClassNotFoundException | InvalidRobotTypeException e) {
+            throw new IllegalArgumentException("Bad settings: " + e, e);
+        }
+    }
+
+    /**
+     * Prints the mean and percentiles of the completed runs.
+     *
+     * @param results the results of the runs
+     */
+    public static void printSummary(List<Result> results) {
+        double[] scores = results.stream().filter(Result::completed).
+                mapToDouble(r -> r.score).sorted().toArray();
+        double[] times = results.stream().filter(Result::completed).
+                mapToDouble(r -> r.finalTime).sorted().toArray();
+        System.out.printf("Completed: %d/%d%n", scores.length,
+                results.size());
+        if (scores.length == 0) return;
+        System.out.printf("Final Score: mean %.2f | p50 %.2f | p90 %.2f | " +
+                "p99 %.2f | max %.2f%n", Arrays.stream(scores).average().
+                getAsDouble(), percentile(scores, 50), percentile(scores, 90),
+                percentile(scores, 99), scores[scores.length - 1]);
+        System.out.printf("Final Delivery time: mean %.2f | p50 %.0f | " +
+                "p90 %.0f | p99 %.0f | max %.0f%n", Arrays.stream(times).
+                average().getAsDouble(), percentile(times, 50),
+                percentile(times, 90), percentile(times, 99),
+                times[times.length - 1]);
+        System.out.printf("Deliveries per tick: mean %.4f | Floors per trip: " +
+                "mean %.2f | Items per trip: mean %.2f%n", results.stream().
+                filter(Result::completed).mapToDouble(Result::throughput).
+                average().getAsDouble(), results.stream().
+                filter(Result::completed).mapToDouble(Result::floorsPerTrip).
+                average().getAsDouble(), results.stream().
+                filter(Result::completed).mapToDouble(Result::itemsPerTrip).
+                average().getAsDouble());
+    }
+
+    /**
+     * Nearest-rank percentile.
+     *
+     * @param sorted the values, in ascending order
+     * @param p      the percentile, from 0 to 100
+     * @return the percentile
+     */
+    public static double percentile(double[] sorted, double p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
@@ -23,10 +23,12 @@ public class BigRobot extends Robot{
      *
      * @param delivery governs the final delivery
      * @param mailPool is the source of mail items
+     * @param context  is the simulation run the robot belongs to
      */
-    public BigRobot(IMailDelivery delivery, IMailPool mailPool) {
+    public BigRobot(IMailDelivery delivery, IMailPool mailPool,
+                    SimulationContext context) {
         // Big Robot can carry more items and items of any weight
-        super(delivery, mailPool, Automail.STRONG);
+        super(delivery, mailPool, Automail.STRONG, context);
         setMaxItems(BIG_ROBOT_MAX_ITEMS);
     }
 }
@@ -0,0 +1,159 @@
+package automail;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A binary mail trace, mapped into memory a window at a time so that only
+ * the window being read takes up memory, however large the file.
+ *
+ * The file starts with a 16 byte header: the magic number "MTRC", the format
+ * version and the number of items as a long. Each item then takes 10 bytes,
+ * big-endian: the arrival time as an int, the floor and the weight as
+ * unsigned shorts, and the fragile flag and priority level as unsigned
+ * bytes. So a binary trace holds floors and weights up to 65535 and
+ * priority levels up to 255; an item beyond that is refused when written,
+ * rather than cut down.
+ */
+class BinaryMailTrace extends MailTrace {
+
+    /** Marks the start of a binary trace, "MTRC" */
+    private static final int MAGIC = 0x4d545243;
+    private static final int VERSION = 1;
+    private static final int HEADER = 16;
+    private static final int RECORD = 10;
+    /** How many bytes of items are mapped at once */
+    private static final long WINDOW = (64L << 20) / RECORD * RECORD;
+    /** The largest floor or weight a record holds */
+    static final int MAX_SHORT = 0xffff;
+    /** The largest priority level a record holds */
+    static final int MAX_BYTE = 0xff;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long count;
+    /** The file position of the first item not yet mapped */
+    private long unmapped;
+    private final long end;
+    private ByteBuffer window;
+    /** The number of items read */
+    private long read;
+
+    /**
+     * Opens a binary trace.
+     *
+     * @param path the trace file
+     * @throws IOException if the file can not be read or is not a trace
+     */
+    BinaryMailTrace(Path path) throws IOException {
+        this.path = path;
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Keep reading until the header is complete
+            }
+            header.flip();
+            if (header.remaining() < HEADER || header.getInt() != MAGIC ||
+                    header.getInt() != VERSION) {
+                throw new IOException(path + " is not a binary mail trace");
+            }
+            count = header.getLong();
+            end = HEADER + count * RECORD;
+            if (channel.size() < end) {
+                throw new IOException(path + " is shorter than its header " +
+                        "says");
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        unmapped = HEADER;
+        window = ByteBuffer.allocate(0);
+    }
+
+    static void writeHeader(DataOutputStream out, long count)
+            throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(count);
+    }
+
+    /**
+     * Writes one item, refusing any field the record can not hold.
+     *
+     * @param out      the binary trace
+     * @param arrival  the arrival time
+     * @param floor    the destination floor
+     * @param weight   the weight in grams
+     * @param fragile  whether the item is fragile
+     * @param priority the priority level, 0 for none
+     * @param position where the item came from, for error messages
+     * @throws IOException if a field is out of range or the write fails
+     */
+    static void writeRecord(DataOutputStream out, int arrival, int floor,
+                            int weight, boolean fragile, int priority,
+                            String position) throws IOException {
+        if (arrival < 0) {
+            throw new IOException(position + ": negative arrival time " +
+                    arrival);
+        }
+        if (floor < Building.LOWEST_FLOOR || floor > MAX_SHORT) {
+            throw new IOException(position + ": floor " + floor +
+                    " does not fit a binary trace");
+        }
+        if (weight < 0 || weight > MAX_SHORT) {
+            throw new IOException(position + ": weight " + weight +
+                    " does not fit a binary trace");
+        }
+        if (priority < 0 || priority > MAX_BYTE) {
+            throw new IOException(position + ": priority level " + priority +
+                    " does not fit a binary trace");
+        }
+        out.writeInt(arrival);
+        out.writeShort(floor);
+        out.writeShort(weight);
+        out.writeByte(fragile ? 1 : 0);
+        out.writeByte(priority);
+    }
+
+    @Override
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        if (!window.hasRemaining()) {
+            if (unmapped >= end) return false;
+            long size = Math.min(WINDOW, end - unmapped);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                    unmapped, size);
+            window = mapped;
+            unmapped += size;
+        }
+        read++;
+        arrival = window.getInt();
+        floor = Short.toUnsignedInt(window.getShort());
+        weight = Short.toUnsignedInt(window.getShort());
+        fragile = window.get() != 0;
+        priority = Byte.toUnsignedInt(window.get());
+        checkItem();
+        return true;
+    }
+
+    @Override
+    public String position() {
+        return path + ": record " + read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
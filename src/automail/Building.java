@@ -2,7 +2,7 @@ package automail;
 
 
 /**
- * The type Building.
+ * The type Building, one per simulation run.
  */
 public class Building {
 
@@ -10,7 +10,7 @@ public class Building {
     /**
      * The number of floors in the building
      */
-    public static int FLOORS;
+    public final int FLOORS;
 
     /**
      * Represents the ground floor location
@@ -22,4 +22,13 @@ public class Building {
      */
     public static final int MAILROOM_LOCATION = 1;
 
+    /**
+     * Instantiates a new Building.
+     *
+     * @param floors the number of floors
+     */
+    public Building(int floors) {
+        this.FLOORS = floors;
+    }
+
 }
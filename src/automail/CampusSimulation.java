@@ -0,0 +1,155 @@
+package automail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Simulates a campus of buildings, each with its own mail pool, fleet and
+ * clock, stepped side by side on the available cores. The buildings do not
+ * share anything while they run; their deliveries and scores are merged
+ * once every building is done.
+ *
+ * Usage: CampusSimulation buildings [seed] [threads]
+ * Building i uses the seed seed + i, or a random seed when there is neither a
+ * seed argument nor a Seed property. Every building takes its settings from
+ * automail.properties, and a setting can be given for one building only by
+ * prefixing it with Building.i., e.g. Building.0.Floors=40 or
+ * Building.3.Robots=Big,Big,Careful.
+ */
+public class CampusSimulation {
+
+    /** The prefix of the settings of a single building */
+    private static final String BUILDING_PREFIX = "Building.";
+
+    public static void main(String[] args) throws IOException,
+            InterruptedException, ExecutionException {
+        if (args.length == 0) {
+            System.out.println("Usage: CampusSimulation buildings [seed] " +
+                    "[threads]");
+            return;
+        }
+        Properties automailProperties = Simulation.loadProperties();
+        int buildings = Integer.parseInt(args[0]);
+        String seedProp = automailProperties.getProperty("Seed");
+        Integer seed = args.length > 1 ? Integer.valueOf(args[1]) :
+                seedProp == null ? null : Integer.valueOf(seedProp);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) :
+                Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("Buildings: %d | Seed: %s | Threads: %d%n",
+                buildings, seed == null ? "random" : seed, threads);
+        List<BatchSimulation.Result> results = run(automailProperties,
+                buildings, seed, threads);
+        for (int i = 0; i < results.size(); i++) {
+            BatchSimulation.Result result = results.get(i);
+            if (result.completed()) {
+                System.out.printf("Building: %d | Delivered: %d | " +
+                        "Final Delivery time: %d | Final Score: %.2f%n", i,
+                        result.delivered, result.finalTime, result.score);
+            } else {
+                System.out.printf("Building: %d | Simulation unable to " +
+                        "complete.%n", i);
+            }
+        }
+        printCampus(results);
+    }
+
+    /**
+     * Gets the settings of one building: the campus settings, overridden by
+     * any Building.i. settings.
+     *
+     * @param automailProperties the campus settings
+     * @param building           the index of the building
+     * @return the settings of the building
+     */
+    public static Properties buildingProperties(Properties automailProperties,
+                                                int building) {
+        Properties buildingProperties = new Properties();
+        buildingProperties.putAll(automailProperties);
+        String prefix = BUILDING_PREFIX + building + ".";
+        for (String key : automailProperties.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                buildingProperties.setProperty(key.substring(prefix.length()),
+                        automailProperties.getProperty(key));
+            }
+        }
+        return buildingProperties;
+    }
+
+    /**
+     * Runs every building of the campus to completion, in parallel.
+     *
+     * @param automailProperties the campus settings
+     * @param buildings          how many buildings make up the campus
+     * @param seed               the seed of the first building, or null to
+     *                           randomise every building
+     * @param threads            how many buildings may be stepped at once
+     * @return the result of each building, in building order; the seed of a
+     *         result is the seed of its building, or -1 if randomised
+     */
+    public static List<BatchSimulation.Result> run(
+            Properties automailProperties, int buildings, Integer seed,
+            int threads) throws InterruptedException, ExecutionException {
+        List<Callable<BatchSimulation.Result>> tasks =
+                new ArrayList<>(buildings);
+        for (int i = 0; i < buildings; i++) {
+            Properties buildingProperties = BatchSimulation.concurrentRun(
+                    buildingProperties(automailProperties, i));
+            Integer buildingSeed = seed == null ? null : seed + i;
+            tasks.add(() -> BatchSimulation.runOne(buildingProperties,
+                    buildingSeed));
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<BatchSimulation.Result> results = new ArrayList<>(buildings);
+            for (Future<BatchSimulation.Result> future :
+                    pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Prints the campus as a whole: the mail delivered and score summed over
+     * the buildings, and the time the last building finished. Buildings
+     * which could not complete are left out, and counted as such.
+     *
+     * @param results the results of the buildings
+     */
+    public static void printCampus(List<BatchSimulation.Result> results) {
+        int completed = 0;
+        int delivered = 0;
+        int trips = 0;
+        long floorsTravelled = 0;
+        int finalTime = 0;
+        double score = 0;
+        for (BatchSimulation.Result result : results) {
+            if (!result.completed()) continue;
+            completed++;
+            delivered += result.delivered;
+            trips += result.trips;
+            floorsTravelled += result.floorsTravelled;
+            finalTime = Math.max(finalTime, result.finalTime);
+            score += result.score;
+        }
+        System.out.printf("Completed: %d/%d%n", completed, results.size());
+        if (completed == 0) return;
+        int failed = results.size() - completed;
+        System.out.printf("Campus: Delivered: %d | Final Delivery time: %d " +
+                "| Final Score: %.2f%s%n", delivered, finalTime, score,
+                failed == 0 ? "" : " | Not counted: " + failed +
+                        " failed building" + (failed == 1 ? "" : "s"));
+        System.out.printf("Deliveries per tick: %.4f | Floors per trip: " +
+                "%.2f%n", finalTime > 0 ? (double) delivered / finalTime : 0,
+                trips > 0 ? (double) floorsTravelled / trips : 0);
+    }
+}
@@ -4,7 +4,6 @@
 
 package automail;
 
-import exceptions.FragileItemBrokenException;
 import strategies.Automail;
 import strategies.IMailPool;
 
@@ -14,7 +13,10 @@ import strategies.IMailPool;
  */
 public class CarefulRobot extends Robot{
 
-    private boolean delaying = true;
+    /**
+     * steps a careful Robot takes to move one floor
+     */
+    public static final int CAREFUL_ROBOT_STEPS_PER_FLOOR = 2;
 
     /**
      * maximum fragile item a careful Robot can carry
@@ -32,20 +34,13 @@ public class CarefulRobot extends Robot{
      *
      * @param delivery governs the final delivery
      * @param mailPool is the source of mail items
+     * @param context  is the simulation run the robot belongs to
      */
-    public CarefulRobot(IMailDelivery delivery, IMailPool mailPool) {
-        super(delivery, mailPool, Automail.STRONG);
+    public CarefulRobot(IMailDelivery delivery, IMailPool mailPool,
+                        SimulationContext context) {
+        // A Careful Robot moves slower, but can carry fragile items
+        super(delivery, mailPool, Automail.STRONG,
+                CAREFUL_ROBOT_STEPS_PER_FLOOR, true, context);
         setMaxItems(CAREFUL_ROBOT_MAX_ITEMS);
     }
-
-    @Override
-    public void moveTowards(int destination) throws FragileItemBrokenException {
-        // A Careful Robot moves slower
-        if(delaying){
-            delaying = false;
-        } else {
-            super.moveTowards(destination);
-            delaying = true;
-        }
-    }
 }
@@ -2,31 +2,49 @@ package automail;
 
 
 /**
- * The type Clock.
+ * The type Clock, one per simulation run.
  */
 public class Clock {
 	
 	/** Represents the current time **/
-    private static int Time = 0;
+    private int Time = 0;
 
     /**
      * The threshold for the latest time for mail to arrive
      */
-    public static int LAST_DELIVERY_TIME;
+    public final int LAST_DELIVERY_TIME;
+
+    /**
+     * Instantiates a new Clock starting at time 0.
+     *
+     * @param lastDeliveryTime the latest time for mail to arrive
+     */
+    public Clock(int lastDeliveryTime) {
+        this.LAST_DELIVERY_TIME = lastDeliveryTime;
+    }
 
     /**
      * Time int.
      *
      * @return the int
      */
-    public static int Time() {
+    public int Time() {
     	return Time;
     }
 
     /**
      * Tick.
      */
-    public static void Tick() {
+    public void Tick() {
     	Time++;
     }
+
+    /**
+     * Moves the time forward by several ticks at once.
+     *
+     * @param ticks the number of ticks
+     */
+    public void advance(int ticks) {
+    	Time += ticks;
+    }
 }
@@ -0,0 +1,85 @@
+package automail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * A CSV mail trace, one item per line:
+ * arrival,floor,weight,fragile,priority
+ * where fragile is true/false or 1/0 and priority is 0 for none. Blank
+ * lines, lines starting with # and a header line are skipped.
+ */
+class CsvMailTrace extends MailTrace {
+
+    private final BufferedReader reader;
+    private final long count;
+    private final Path path;
+    private long line;
+
+    /**
+     * Opens a CSV trace, reading it through once to count its items.
+     *
+     * @param path the trace file
+     * @throws IOException if the file can not be read
+     */
+    CsvMailTrace(Path path) throws IOException {
+        this.path = path;
+        try (Stream<String> lines = Files.lines(path)) {
+            count = lines.filter(CsvMailTrace::isItem).count();
+        }
+        reader = Files.newBufferedReader(path);
+    }
+
+    /**
+     * @return whether a line holds an item, rather than a header or comment
+     */
+    private static boolean isItem(String line) {
+        String trimmed = line.trim();
+        return !trimmed.isEmpty() && Character.isDigit(trimmed.charAt(0));
+    }
+
+    @Override
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        String text;
+        do {
+            text = reader.readLine();
+            if (text == null) return false;
+            line++;
+        } while (!isItem(text));
+        String[] fields = text.split(",");
+        if (fields.length != 5) {
+            throw new IOException(position() + ": expected " +
+                    "arrival,floor,weight,fragile,priority");
+        }
+        try {
+            arrival = Integer.parseInt(fields[0].trim());
+            floor = Integer.parseInt(fields[1].trim());
+            weight = Integer.parseInt(fields[2].trim());
+            String flag = fields[3].trim();
+            fragile = flag.equals("1") || Boolean.parseBoolean(flag);
+            priority = Integer.parseInt(fields[4].trim());
+        } catch (NumberFormatException e) {
+            throw new IOException(position() + ": " + e.getMessage());
+        }
+        checkItem();
+        return true;
+    }
+
+    @Override
+    public String position() {
+        return path + ":" + line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -49,9 +49,23 @@ public interface DelivererBehaviour {
      * For the deliverers to move towards to a certain floor on in the building
      *
      * @param destination the destination floor
-     * @throws FragileItemBrokenException it is thrown if the deliverer can
-     * not handle fragile item and it assigned to deliver one
      */
-    void moveTowards(int destination) throws FragileItemBrokenException;
+    void moveTowards(int destination);
+
+    /**
+     * Counts the coming steps which would do nothing but move the deliverer
+     * towards the floor it is heading for
+     *
+     * @return the number of such steps, or Integer.MAX_VALUE if the deliverer
+     * is waiting to be dispatched
+     */
+    int idleSteps();
+
+    /**
+     * Makes a number of steps at once, no more than {@link #idleSteps()}
+     *
+     * @param steps the number of steps to make
+     */
+    void skipSteps(int steps);
 
 }
@@ -0,0 +1,81 @@
+package automail;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * Keeps track of which mail items have been delivered.
+ * Mail items are numbered densely from 0 as they are created, so a bit per
+ * item number is enough to tell whether an item was already delivered.
+ */
+public class DeliveryLedger {
+
+    /** One bit per mail item, set once the item is delivered */
+    private BitSet delivered;
+
+    /** The number of items delivered so far */
+    private int size;
+
+    /**
+     * Constructor for an empty ledger
+     */
+    public DeliveryLedger() {
+        this.delivered = new BitSet();
+        this.size = 0;
+    }
+
+    /**
+     * Records the delivery of a mail item
+     * @param mailItem the mail item being delivered
+     * @return false if the item had already been delivered
+     */
+    public boolean add(MailItem mailItem) {
+        int index = mailItem.hashCode();
+        if (delivered.get(index)) {
+            return false;
+        }
+        delivered.set(index);
+        size++;
+        return true;
+    }
+
+    /**
+     * @param mailItem the mail item
+     * @return whether the mail item has been delivered
+     */
+    public boolean contains(MailItem mailItem) {
+        return delivered.get(mailItem.hashCode());
+    }
+
+    /**
+     * @return the number of items delivered so far
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Writes the delivered items to a snapshot
+     * @param out the snapshot
+     * @throws IOException if the snapshot can not be written
+     */
+    void writeState(DataOutputStream out) throws IOException {
+        long[] words = delivered.toLongArray();
+        out.writeInt(words.length);
+        for (long word : words) out.writeLong(word);
+    }
+
+    /**
+     * Replaces the delivered items with those of a snapshot
+     * @param in the snapshot
+     * @throws IOException if the snapshot can not be read
+     */
+    void readState(DataInputStream in) throws IOException {
+        long[] words = new long[in.readInt()];
+        for (int i = 0; i < words.length; i++) words[i] = in.readLong();
+        delivered = BitSet.valueOf(words);
+        size = delivered.cardinality();
+    }
+}
@@ -0,0 +1,169 @@
+package automail;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+import automail.Simulation.RobotType;
+
+/**
+ * Delivery latencies of a run, overall and broken down by priority level,
+ * destination floor, the type of robot delivering and whether the item is
+ * fragile. The latency of an item is the time from its arrival to its
+ * delivery. Recording a delivery allocates nothing, except the first time a
+ * priority level is seen.
+ */
+public class DeliveryMetrics {
+
+    private static final RobotType[] ROBOT_TYPES = RobotType.values();
+
+    private final LatencyHistogram all = new LatencyHistogram();
+    /** Indexed by priority level, 0 being mail without a priority */
+    private LatencyHistogram[] byPriority = new LatencyHistogram[0];
+    /** Indexed by floor */
+    private final LatencyHistogram[] byFloor;
+    /** Indexed by robot type */
+    private final LatencyHistogram[] byRobotType;
+    /** Plain items, then fragile items */
+    private final LatencyHistogram[] byFragile;
+    /** The type of each robot, by robot number */
+    private final RobotType[] robotTypes;
+
+    /**
+     * Instantiates new delivery metrics.
+     *
+     * @param floors     the number of floors in the building
+     * @param robotTypes the robots of the fleet, in the order they are made
+     */
+    public DeliveryMetrics(int floors, List<RobotType> robotTypes) {
+        this.byFloor = histograms(floors + 1);
+        this.byRobotType = histograms(ROBOT_TYPES.length);
+        this.byFragile = histograms(2);
+        this.robotTypes = robotTypes.toArray(new RobotType[0]);
+    }
+
+    private static LatencyHistogram[] histograms(int length) {
+        LatencyHistogram[] histograms = new LatencyHistogram[length];
+        for (int i = 0; i < length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+
+    /**
+     * Records a delivery.
+     *
+     * @param mailItem the item delivered
+     * @param robot    the robot delivering it, or null if not known
+     * @param latency  the ticks from its arrival to its delivery
+     */
+    public void record(MailItem mailItem, Robot robot, int latency) {
+        all.record(latency);
+
+        int level = mailItem instanceof PriorityMailItem ?
+                ((PriorityMailItem) mailItem).getPriorityLevel() : 0;
+        if (level >= byPriority.length) {
+            int old = byPriority.length;
+            byPriority = Arrays.copyOf(byPriority, level + 1);
+            for (int i = old; i <= level; i++) {
+                byPriority[i] = new LatencyHistogram();
+            }
+        }
+        byPriority[level].record(latency);
+
+        int floor = mailItem.getDestFloor();
+        if (floor >= 0 && floor < byFloor.length) {
+            byFloor[floor].record(latency);
+        }
+
+        if (robot != null) {
+            int number = robot.hashCode();
+            if (number < robotTypes.length) {
+                byRobotType[robotTypes[number].ordinal()].record(latency);
+            }
+        }
+
+        byFragile[mailItem.getFragile() ? 1 : 0].record(latency);
+    }
+
+    /**
+     * Gets the latencies of every delivery.
+     *
+     * @return the histogram
+     */
+    public LatencyHistogram getAll() {
+        return all;
+    }
+
+    /**
+     * Gets the latencies of the deliveries of one priority level.
+     *
+     * @param level the priority level, 0 for mail without a priority
+     * @return the histogram, or null if no such item was delivered
+     */
+    public LatencyHistogram getByPriority(int level) {
+        return level < byPriority.length ? byPriority[level] : null;
+    }
+
+    /**
+     * Gets the latencies of the deliveries to one floor.
+     *
+     * @param floor the floor
+     * @return the histogram
+     */
+    public LatencyHistogram getByFloor(int floor) {
+        return byFloor[floor];
+    }
+
+    /**
+     * Gets the latencies of the deliveries made by one type of robot.
+     *
+     * @param robotType the robot type
+     * @return the histogram
+     */
+    public LatencyHistogram getByRobotType(RobotType robotType) {
+        return byRobotType[robotType.ordinal()];
+    }
+
+    /**
+     * Gets the latencies of the deliveries of fragile or plain items.
+     *
+     * @param fragile whether the items are fragile
+     * @return the histogram
+     */
+    public LatencyHistogram getByFragile(boolean fragile) {
+        return byFragile[fragile ? 1 : 0];
+    }
+
+    /**
+     * Prints the latencies, skipping groups with no deliveries.
+     *
+     * @param out  where to print
+     * @param time the time of the run
+     */
+    public void print(PrintStream out, int time) {
+        print(out, time, "all", all);
+        for (int level = 0; level < byPriority.length; level++) {
+            print(out, time, "priority " + level, byPriority[level]);
+        }
+        for (int floor = Building.LOWEST_FLOOR; floor < byFloor.length;
+             floor++) {
+            print(out, time, "floor " + floor, byFloor[floor]);
+        }
+        for (RobotType robotType : ROBOT_TYPES) {
+            print(out, time, "robot " + robotType,
+                    byRobotType[robotType.ordinal()]);
+        }
+        print(out, time, "plain", byFragile[0]);
+        print(out, time, "fragile", byFragile[1]);
+    }
+
+    private static void print(PrintStream out, int time, String group,
+                              LatencyHistogram histogram) {
+        if (histogram.getCount() == 0) return;
+        out.printf("T: %3d | Latency %s: count %d | mean %.2f | p50 %d | " +
+                "p99 %d | max %d%n", time, group, histogram.getCount(),
+                histogram.getMean(), histogram.getPercentile(50),
+                histogram.getPercentile(99), histogram.getMax());
+    }
+}
@@ -0,0 +1,58 @@
+package automail;
+
+/**
+ * Formats events as the lines of text the simulation has always printed.
+ */
+public final class EventFormat {
+
+    private EventFormat() {
+    }
+
+    /**
+     * @return the line reporting a mail item arriving
+     */
+    public static String mailArrived(int time, MailItem mailItem) {
+        return String.format("T: %3d > new addToPool [%s]%n", time,
+                mailItem.toString());
+    }
+
+    /**
+     * @return the line reporting a mail item put back in the pool
+     */
+    public static String mailReturned(int time, MailItem mailItem) {
+        return String.format("T: %3d > old addToPool [%s]%n", time,
+                mailItem.toString());
+    }
+
+    /**
+     * @return the line reporting a robot changing state
+     */
+    public static String stateChanged(int time, String robotId, int tubeSize,
+                                      int tubeCapacity, Robot.RobotState from,
+                                      Robot.RobotState to) {
+        return String.format("T: %3d > %7s changed from %s to %s%n", time,
+                idTube(robotId, tubeSize, tubeCapacity), from, to);
+    }
+
+    /**
+     * @return the line reporting a robot setting off with a mail item
+     */
+    public static String routeSet(int time, String robotId, int tubeSize,
+                                  int tubeCapacity, MailItem mailItem) {
+        return String.format("T: %3d > %7s-> [%s]%n", time,
+                idTube(robotId, tubeSize, tubeCapacity), mailItem.toString());
+    }
+
+    /**
+     * @return the line reporting a delivery
+     */
+    public static String delivered(int time, MailItem mailItem) {
+        return String.format("T: %3d > Delivered [%s]%n", time,
+                mailItem.toString());
+    }
+
+    private static String idTube(String robotId, int tubeSize,
+                                 int tubeCapacity) {
+        return String.format("%s(%1d/%1d)", robotId, tubeSize, tubeCapacity);
+    }
+}
@@ -0,0 +1,93 @@
+package automail;
+
+/**
+ * Receives what happens during a simulation run, as it happens.
+ * Sinks are called from the simulation loop, so they should do as little as
+ * possible on the calling thread.
+ */
+public interface EventSink {
+
+    /**
+     * A mail item has arrived in the mailroom
+     *
+     * @param time     the time of the event
+     * @param mailItem the mail item
+     */
+    void mailArrived(int time, MailItem mailItem);
+
+    /**
+     * A robot has put an undelivered mail item back in the mail pool
+     *
+     * @param time     the time of the event
+     * @param mailItem the mail item
+     */
+    void mailReturned(int time, MailItem mailItem);
+
+    /**
+     * A robot has changed state
+     *
+     * @param time         the time of the event
+     * @param robotId      the id of the robot
+     * @param tubeSize     the number of items in the robot's tube
+     * @param tubeCapacity the capacity of the robot's tube
+     * @param from         the state the robot leaves
+     * @param to           the state the robot enters
+     */
+    void stateChanged(int time, String robotId, int tubeSize,
+                      int tubeCapacity, Robot.RobotState from,
+                      Robot.RobotState to);
+
+    /**
+     * A robot has set off to deliver a mail item
+     *
+     * @param time         the time of the event
+     * @param robotId      the id of the robot
+     * @param tubeSize     the number of items left in the robot's tube
+     * @param tubeCapacity the capacity of the robot's tube
+     * @param mailItem     the mail item
+     */
+    void routeSet(int time, String robotId, int tubeSize, int tubeCapacity,
+                  MailItem mailItem);
+
+    /**
+     * A mail item has been delivered
+     *
+     * @param time     the time of the event
+     * @param mailItem the mail item
+     */
+    void delivered(int time, MailItem mailItem);
+
+    /**
+     * Writes out anything still held and releases the sink
+     */
+    default void close() {
+    }
+
+    /**
+     * A sink which ignores every event, for benchmark and batch runs
+     */
+    EventSink NONE = new EventSink() {
+        @Override
+        public void mailArrived(int time, MailItem mailItem) {
+        }
+
+        @Override
+        public void mailReturned(int time, MailItem mailItem) {
+        }
+
+        @Override
+        public void stateChanged(int time, String robotId, int tubeSize,
+                                 int tubeCapacity, Robot.RobotState from,
+                                 Robot.RobotState to) {
+        }
+
+        @Override
+        public void routeSet(int time, String robotId, int tubeSize,
+                             int tubeCapacity, MailItem mailItem) {
+        }
+
+        @Override
+        public void delivered(int time, MailItem mailItem) {
+        }
+    };
+}
@@ -0,0 +1,416 @@
+package automail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+
+import exceptions.ExcessiveDeliveryException;
+import exceptions.FragileItemBrokenException;
+import exceptions.InvalidRobotTypeException;
+import exceptions.ItemTooHeavyException;
+import exceptions.NoValidRobotsAvailableException;
+
+/**
+ * Searches the mixes of robot types for the fleets worth buying: those for
+ * which no other fleet is as cheap, scores as well and finishes as soon,
+ * averaged over a number of seeds.
+ *
+ * Every fleet of up to a given size is tried, cheapest first, several at
+ * once, with the runs of each fleet's seeds stepped side by side a chunk of
+ * ticks at a time. Since the score and the clock of a run only go up, a
+ * fleet is given up on as soon as its partial score and time are already
+ * worse than those of a fleet found no dearer, or past the target.
+ *
+ * Usage: FleetTuner maxRobots seeds [threads]
+ * The seeds used are the Seed property (or 0) onwards. Robot_Costs gives the
+ * cost of each robot type, e.g. Big:4,Careful:3,Standard:2,Weak:1, and
+ * Target_Score and Target_Time, if set, the worst mean final score and
+ * final delivery time that will do. All other settings come from
+ * automail.properties. A fleet lists its robots in the order of
+ * Simulation.RobotType.
+ */
+public class FleetTuner {
+
+    /** How many ticks each run is stepped between looks at the scores */
+    private static final int CHUNK = 50;
+
+    /**
+     * What became of a fleet.
+     */
+    public enum Outcome { COMPLETED, PRUNED, FAILED }
+
+    /**
+     * A fleet and, once tried, how it did.
+     */
+    public static class Candidate {
+        /** The robots of the fleet */
+        public final List<Simulation.RobotType> robots;
+        /** The cost of the fleet */
+        public final double cost;
+        /** What became of the fleet */
+        public Outcome outcome;
+        /** The mean final score over the seeds */
+        public double score = Double.NaN;
+        /** The mean final delivery time over the seeds */
+        public double finalTime = Double.NaN;
+
+        /**
+         * Instantiates a new Candidate.
+         *
+         * @param robots the robots of the fleet
+         * @param cost   the cost of the fleet
+         */
+        public Candidate(List<Simulation.RobotType> robots, double cost) {
+            this.robots = robots;
+            this.cost = cost;
+        }
+
+        /**
+         * Tells whether this fleet is at least as good as the given one in
+         * every way and better in one.
+         *
+         * @param cost      the cost of the other fleet
+         * @param score     the score of the other fleet
+         * @param finalTime the final delivery time of the other fleet
+         * @return whether this fleet dominates the other
+         */
+        boolean dominates(double cost, double score, double finalTime) {
+            return this.cost <= cost && this.score <= score &&
+                    this.finalTime <= finalTime && (this.cost < cost ||
+                    this.score < score || this.finalTime < finalTime);
+        }
+
+        /**
+         * @return the robots as the Robots setting lists them
+         */
+        public String fleet() {
+            StringBuilder fleet = new StringBuilder();
+            for (Simulation.RobotType robot : robots) {
+                if (fleet.length() > 0) fleet.append(',');
+                fleet.append(robot);
+            }
+            return fleet.toString();
+        }
+    }
+
+    private final Properties automailProperties;
+    private final int firstSeed;
+    private final int seeds;
+    private final double targetScore;
+    private final double targetTime;
+    /** The fleets completed so far, which later fleets are held up to */
+    private final List<Candidate> completed = new ArrayList<>();
+
+    /**
+     * Instantiates a new tuner.
+     *
+     * @param automailProperties the settings shared by all runs
+     * @param firstSeed          the seed of the first run of each fleet
+     * @param seeds              how many seeds each fleet is run with
+     * @param targetScore        the worst mean score that will do, or
+     *                           infinity
+     * @param targetTime         the worst mean final delivery time that
+     *                           will do, or infinity
+     */
+    public FleetTuner(Properties automailProperties, int firstSeed, int seeds,
+                      double targetScore, double targetTime) {
+        this.automailProperties = automailProperties;
+        this.firstSeed = firstSeed;
+        this.seeds = seeds;
+        this.targetScore = targetScore;
+        this.targetTime = targetTime;
+    }
+
+    public static void main(String[] args) throws IOException,
+            InterruptedException, ExecutionException {
+        if (args.length < 2) {
+            System.out.println("Usage: FleetTuner maxRobots seeds [threads]");
+            return;
+        }
+        Properties automailProperties = Simulation.loadProperties();
+        int maxRobots = Integer.parseInt(args[0]);
+        int seeds = Integer.parseInt(args[1]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) :
+                Runtime.getRuntime().availableProcessors();
+        String seedProp = automailProperties.getProperty("Seed");
+        int firstSeed = seedProp == null ? 0 : Integer.parseInt(seedProp);
+        double[] costs = costs(automailProperties.getProperty("Robot_Costs",
+                "Big:4,Careful:3,Standard:2,Weak:1"));
+        double targetScore = target(automailProperties, "Target_Score");
+        double targetTime = target(automailProperties, "Target_Time");
+
+        List<Candidate> candidates = candidates(maxRobots, costs);
+        System.out.printf("Fleets: %d | Seeds: %d | First seed: %d | " +
+                "Threads: %d%n", candidates.size(), seeds, firstSeed,
+                threads);
+        FleetTuner tuner = new FleetTuner(automailProperties, firstSeed, seeds,
+                targetScore, targetTime);
+        tuner.run(candidates, threads);
+
+        int[] outcomes = new int[Outcome.values().length];
+        for (Candidate candidate : candidates) {
+            outcomes[candidate.outcome.ordinal()]++;
+        }
+        System.out.printf("Completed: %d | Pruned: %d | Failed: %d%n",
+                outcomes[Outcome.COMPLETED.ordinal()],
+                outcomes[Outcome.PRUNED.ordinal()],
+                outcomes[Outcome.FAILED.ordinal()]);
+        for (Candidate candidate : paretoFront(candidates)) {
+            System.out.printf("Cost: %.2f | Robots: %s | Final Delivery " +
+                    "time: mean %.1f | Final Score: mean %.2f%n",
+                    candidate.cost, candidate.fleet(), candidate.finalTime,
+                    candidate.score);
+        }
+        if (targetScore < Double.POSITIVE_INFINITY ||
+                targetTime < Double.POSITIVE_INFINITY) {
+            Candidate cheapest = null;
+            for (Candidate candidate : paretoFront(candidates)) {
+                if (tuner.meetsTarget(candidate.score, candidate.finalTime)) {
+                    cheapest = candidate;
+                    break;
+                }
+            }
+            if (cheapest == null) {
+                System.out.println("No fleet meets the target.");
+            } else {
+                System.out.printf("Cheapest meeting the target: Cost: %.2f | " +
+                        "Robots: %s%n", cheapest.cost, cheapest.fleet());
+            }
+        }
+    }
+
+    /**
+     * Reads the cost of each robot type.
+     *
+     * @param costs the costs, e.g. Big:4,Careful:3,Standard:2,Weak:1
+     * @return the costs, indexed by robot type
+     */
+    public static double[] costs(String costs) {
+        double[] byType = new double[Simulation.RobotType.values().length];
+        for (String cost : costs.split(",")) {
+            String[] pair = cost.split(":");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Robot_Costs should be " +
+                        "type:cost,...");
+            }
+            byType[Simulation.RobotType.valueOf(pair[0].trim()).ordinal()] =
+                    Double.parseDouble(pair[1].trim());
+        }
+        return byType;
+    }
+
+    private static double target(Properties automailProperties, String name) {
+        String target = automailProperties.getProperty(name, "");
+        return target.isEmpty() ? Double.POSITIVE_INFINITY :
+                Double.parseDouble(target);
+    }
+
+    /**
+     * Lists every fleet of one up to maxRobots robots, cheapest first.
+     *
+     * @param maxRobots the size of the largest fleet
+     * @param costs     the cost of each robot type
+     * @return the fleets
+     */
+    public static List<Candidate> candidates(int maxRobots, double[] costs) {
+        List<Candidate> candidates = new ArrayList<>();
+        addCandidates(candidates, new int[costs.length], 0, maxRobots, costs);
+        candidates.sort(Comparator.comparingDouble((Candidate c) -> c.cost).
+                thenComparingInt(c -> c.robots.size()));
+        return candidates;
+    }
+
+    private static void addCandidates(List<Candidate> candidates, int[] counts,
+                                      int type, int left, double[] costs) {
+        if (type == counts.length) {
+            List<Simulation.RobotType> robots = new ArrayList<>();
+            double cost = 0;
+            for (int i = 0; i < counts.length; i++) {
+                for (int j = 0; j < counts[i]; j++) {
+                    robots.add(Simulation.RobotType.values()[i]);
+                }
+                cost += counts[i] * costs[i];
+            }
+            if (!robots.isEmpty()) {
+                candidates.add(new Candidate(robots, cost));
+            }
+            return;
+        }
+        for (int count = 0; count <= left; count++) {
+            counts[type] = count;
+            addCandidates(candidates, counts, type + 1, left - count, costs);
+        }
+        counts[type] = 0;
+    }
+
+    /**
+     * Tries every fleet, several at once, cheapest first.
+     *
+     * @param candidates the fleets, cheapest first
+     * @param threads    how many runs may go on at once
+     */
+    public void run(List<Candidate> candidates, int threads)
+            throws InterruptedException, ExecutionException {
+        List<Callable<Void>> tasks = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            tasks.add(() -> {
+                evaluate(candidate);
+                return null;
+            });
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Runs a fleet over every seed, giving up early if it can no longer be
+     * worth having.
+     *
+     * @param candidate the fleet
+     */
+    void evaluate(Candidate candidate) {
+        Properties fleetProperties =
+                BatchSimulation.concurrentRun(automailProperties);
+        fleetProperties.setProperty("Robots", candidate.fleet());
+        Simulation[] runs = new Simulation[seeds];
+        try {
+            for (int i = 0; i < seeds; i++) {
+                runs[i] = new Simulation(fleetProperties, firstSeed + i,
+                        BatchSimulation.SILENT, EventSink.NONE);
+                runs[i].start();
+            }
+
+            for (int until = CHUNK; ; until += CHUNK) {
+                int time = until;
+                List<Callable<Boolean>> steps = new ArrayList<>(seeds);
+                for (Simulation simulation : runs) {
+                    if (simulation.isComplete()) continue;
+                    steps.add(() -> {
+                        try {
+                            simulation.runUntil(time);
+                            return true;
+                        } catch (ExcessiveDeliveryException |
+                                ItemTooHeavyException |
+                                FragileItemBrokenException |
+                                NoValidRobotsAvailableException e) {
+                            // The fleet can not deliver this mail
+                            return false;
+                        }
+                    });
+                }
+                boolean complete = steps.isEmpty();
+                for (ForkJoinTask<Boolean> step : ForkJoinTask.invokeAll(
+                        adapt(steps))) {
+                    if (!step.join()) {
+                        candidate.outcome = Outcome.FAILED;
+                        return;
+                    }
+                }
+
+                double score = 0;
+                double finalTime = 0;
+                for (Simulation simulation : runs) {
+                    score += simulation.getTotalScore();
+                    finalTime += simulation.getTime();
+                }
+                score /= seeds;
+                finalTime /= seeds;
+                if (complete) {
+                    candidate.score = score;
+                    candidate.finalTime = finalTime;
+                    candidate.outcome = Outcome.COMPLETED;
+                    synchronized (completed) {
+                        completed.add(candidate);
+                    }
+                    return;
+                }
+                if (!meetsTarget(score, finalTime) ||
+                        isDominated(candidate.cost, score, finalTime)) {
+                    candidate.outcome = Outcome.PRUNED;
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ClassNotFoundException | InvalidRobotTypeException e) {
+            throw new IllegalArgumentException("Bad settings: " + e, e);
+        } finally {
+            // Runs given up on part way are let go of too
+            for (Simulation simulation : runs) {
+                if (simulation != null) simulation.close();
+            }
+        }
+    }
+
+    private static List<ForkJoinTask<Boolean>> adapt(
+            List<Callable<Boolean>> steps) {
+        List<ForkJoinTask<Boolean>> tasks = new ArrayList<>(steps.size());
+        for (Callable<Boolean> step : steps) tasks.add(ForkJoinTask.adapt(step));
+        return tasks;
+    }
+
+    /**
+     * Tells whether a score and final delivery time are within the target.
+     *
+     * @param score     the mean score
+     * @param finalTime the mean final delivery time
+     * @return whether they will do
+     */
+    boolean meetsTarget(double score, double finalTime) {
+        return score <= targetScore && finalTime <= targetTime;
+    }
+
+    /**
+     * Tells whether a fleet completed so far beats one whose score and time
+     * are at least the given ones.
+     */
+    private boolean isDominated(double cost, double score, double finalTime) {
+        synchronized (completed) {
+            for (Candidate other : completed) {
+                if (other.dominates(cost, score, finalTime)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Picks out the completed fleets no other completed fleet dominates.
+     *
+     * @param candidates the fleets
+     * @return the Pareto front, cheapest first
+     */
+    public static List<Candidate> paretoFront(List<Candidate> candidates) {
+        List<Candidate> front = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (candidate.outcome != Outcome.COMPLETED) continue;
+            boolean dominated = false;
+            for (Candidate other : candidates) {
+                if (other.outcome == Outcome.COMPLETED && other.dominates(
+                        candidate.cost, candidate.score,
+                        candidate.finalTime)) {
+                    dominated = true;
+                    break;
+                }
+            }
+            if (!dominated) front.add(candidate);
+        }
+        front.sort(Comparator.comparingDouble((Candidate c) -> c.cost).
+                thenComparingDouble(c -> c.score));
+        return Collections.unmodifiableList(front);
+    }
+}
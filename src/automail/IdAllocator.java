@@ -0,0 +1,45 @@
+package automail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out dense sequential numbers, starting from 0.
+ * Numbers are taken with a single atomic increment, so several threads can
+ * create numbered objects at once; a single thread always sees them in
+ * creation order.
+ */
+public class IdAllocator {
+
+    /** The next number to hand out */
+    private final AtomicInteger next;
+
+    /**
+     * Constructor for an allocator starting from 0
+     */
+    public IdAllocator() {
+        this.next = new AtomicInteger();
+    }
+
+    /**
+     * @return the next unused number
+     */
+    public int next() {
+        return next.getAndIncrement();
+    }
+
+    /**
+     * Takes a run of numbers at once.
+     * @param count how many numbers to take
+     * @return the first of them
+     */
+    public int reserve(int count) {
+        return next.getAndAdd(count);
+    }
+
+    /**
+     * @return how many numbers have been handed out so far
+     */
+    public int allocated() {
+        return next.get();
+    }
+}
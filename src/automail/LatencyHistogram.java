@@ -0,0 +1,119 @@
+package automail;
+
+/**
+ * Counts delivery latencies in fixed buckets, in the manner of an HDR
+ * histogram: latencies under 32 ticks get a bucket each, and each doubling
+ * above that is split into 16 buckets, so a percentile is never more than
+ * about 6% above the true value. Recording a latency allocates nothing.
+ */
+public class LatencyHistogram {
+
+    /** Each doubling of latency is split into 1 << SUB_BUCKET_BITS buckets */
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** Enough buckets for any non-negative int */
+    private static final int BUCKETS = (32 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private int max;
+
+    /**
+     * Gets the bucket holding a latency.
+     *
+     * @param latency the latency, not negative
+     * @return the bucket
+     */
+    static int bucketOf(int latency) {
+        if (latency < SUB_BUCKETS) return latency;
+        int shift = 31 - Integer.numberOfLeadingZeros(latency) -
+                SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (latency >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Gets the largest latency a bucket holds.
+     *
+     * @param bucket the bucket
+     * @return the largest latency in it
+     */
+    static int highestIn(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return (int) Math.min(Integer.MAX_VALUE, lowest + (1L << shift) - 1);
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param latency the latency, in ticks
+     */
+    public void record(int latency) {
+        if (latency < 0) latency = 0;
+        counts[bucketOf(latency)]++;
+        count++;
+        sum += latency;
+        if (latency > max) max = latency;
+    }
+
+    /**
+     * Adds the latencies recorded by another histogram to this one.
+     *
+     * @param other the other histogram
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Gets count.
+     *
+     * @return the number of latencies recorded
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets mean.
+     *
+     * @return the mean latency, or 0 if none was recorded
+     */
+    public double getMean() {
+        return count > 0 ? (double) sum / count : 0;
+    }
+
+    /**
+     * Gets max.
+     *
+     * @return the largest latency recorded
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * Gets a percentile of the latencies, by nearest rank.
+     *
+     * @param p the percentile, from 0 to 100
+     * @return the largest latency of the bucket holding the percentile, or 0
+     * if none was recorded
+     */
+    public int getPercentile(double p) {
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(highestIn(i), max);
+        }
+        return max;
+    }
+}
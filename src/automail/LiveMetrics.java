@@ -0,0 +1,385 @@
+package automail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Counts what a run is doing while it runs, for reading from another thread
+ * over JMX or from a small HTTP endpoint, rather than waiting for the
+ * results at the end.
+ *
+ * Every count is a LongAdder, so the simulation thread, and the stepper
+ * threads, only ever add to a cell of their own; the cells are summed when
+ * the counts are read. The mail pool depths are kept by a
+ * {@link MonitoredMailPool} around the run's pool and the robot states by
+ * passing the run's events through this, on to where they were going.
+ */
+public class LiveMetrics implements EventSink, LiveMetricsMXBean {
+
+    /** Priority levels above this are counted with it */
+    private static final int MAX_PRIORITY = 127;
+    private static final String[] CLASSES = { "light", "heavy", "fragile" };
+    private static final AtomicInteger RUNS = new AtomicInteger();
+
+    private final EventSink events;
+    private final LongAdder ticks = new LongAdder();
+    private final LongAdder deliveries = new LongAdder();
+    private final DoubleAdder score = new DoubleAdder();
+    private final LongAdder[] byPriority = adders(MAX_PRIORITY + 1);
+    private final LongAdder[] byClass = adders(CLASSES.length);
+    private final LongAdder waitingRobots = new LongAdder();
+    private final LongAdder[] byState =
+            adders(Robot.RobotState.values().length);
+    private final Rate tickRate = new Rate(ticks);
+    private final Rate deliveryRate = new Rate(deliveries);
+
+    private ObjectName name;
+    private HttpServer server;
+
+    /**
+     * Instantiates the counts of a run.
+     *
+     * @param events where the run's events go on to
+     */
+    public LiveMetrics(EventSink events) {
+        this.events = events;
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) adders[i] = new LongAdder();
+        return adders;
+    }
+
+    /**
+     * Publishes the counts as an MXBean named automail:type=Simulation and,
+     * if a port is given, as text at http://localhost:port/metrics.
+     *
+     * @param port the HTTP port, or 0 for JMX only
+     * @throws IOException if the HTTP endpoint can not be started
+     */
+    public void publish(int port) throws IOException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            name = new ObjectName("automail:type=Simulation,run=" +
+                    RUNS.incrementAndGet());
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            throw new IOException("Can not register " + name, e);
+        }
+        if (port > 0) {
+            try {
+                this.server = HttpServer.create(new InetSocketAddress(
+                        InetAddress.getLoopbackAddress(), port), 0);
+            } catch (IOException e) {
+                // Leave nothing published if the port is taken
+                unpublish();
+                throw e;
+            }
+            this.server.createContext("/metrics", this::handle);
+            this.server.start();
+        }
+    }
+
+    /**
+     * Stops publishing the counts.
+     */
+    public void unpublish() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+                        name);
+            } catch (JMException e) {
+                // Already gone
+            }
+            name = null;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] body = format().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type",
+                "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Writes the counts out one per line, as name, labels and value.
+     *
+     * @return the counts
+     */
+    public String format() {
+        StringBuilder text = new StringBuilder();
+        line(text, "automail_ticks_total", "", getTicks());
+        line(text, "automail_ticks_per_second", "", getTicksPerSecond());
+        line(text, "automail_deliveries_total", "", getDeliveries());
+        line(text, "automail_deliveries_per_second", "",
+                getDeliveriesPerSecond());
+        line(text, "automail_total_score", "", getTotalScore());
+        line(text, "automail_pool_depth", "", getPoolDepth());
+        for (Map.Entry<Integer, Long> level :
+                getPoolDepthByPriority().entrySet()) {
+            line(text, "automail_pool_depth", "priority=\"" + level.getKey() +
+                    "\"", level.getValue());
+        }
+        for (Map.Entry<String, Long> kind : getPoolDepthByClass().entrySet()) {
+            line(text, "automail_pool_depth", "class=\"" + kind.getKey() +
+                    "\"", kind.getValue());
+        }
+        line(text, "automail_waiting_robots", "", getWaitingRobots());
+        for (Map.Entry<String, Long> state : getRobotStates().entrySet()) {
+            line(text, "automail_robots", "state=\"" + state.getKey() + "\"",
+                    state.getValue());
+        }
+        return text.toString();
+    }
+
+    private static void line(StringBuilder text, String name, String labels,
+                             Object value) {
+        text.append(name);
+        if (!labels.isEmpty()) text.append('{').append(labels).append('}');
+        text.append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Counts the ticks simulated, including any skipped.
+     *
+     * @param count the number of ticks
+     */
+    void ticked(int count) {
+        ticks.add(count);
+    }
+
+    /**
+     * Counts an item delivered.
+     *
+     * @param itemScore what it added to the score
+     */
+    void delivered(double itemScore) {
+        deliveries.increment();
+        score.add(itemScore);
+    }
+
+    /**
+     * Counts an item going into the mail pool, new or brought back.
+     *
+     * @param mailItem the mail item
+     */
+    void added(MailItem mailItem) {
+        byPriority[priority(mailItem)].increment();
+        byClass[capability(mailItem)].increment();
+    }
+
+    /**
+     * Counts an item taken out of the mail pool by a robot.
+     *
+     * @param mailItem the mail item
+     */
+    void loaded(MailItem mailItem) {
+        byPriority[priority(mailItem)].decrement();
+        byClass[capability(mailItem)].decrement();
+    }
+
+    /**
+     * Counts a robot starting or stopping waiting to be loaded.
+     *
+     * @param change 1 for a robot starting, -1 for one stopping
+     */
+    void waiting(int change) {
+        waitingRobots.add(change);
+    }
+
+    /**
+     * Counts everything afresh, as when a run starts or is restored from a
+     * snapshot.
+     *
+     * @param time          the time of the run
+     * @param totalScore    the score so far
+     * @param delivered     the number of items delivered so far
+     * @param robots        the robots of the run
+     * @param waiting       the items waiting in the mail pool
+     * @param waitingRobots the number of robots waiting to be loaded
+     */
+    void recount(int time, double totalScore, int delivered,
+                 DelivererBehaviour[] robots, List<MailItem> waiting,
+                 int waitingRobots) {
+        ticks.reset();
+        ticks.add(time);
+        deliveries.reset();
+        deliveries.add(delivered);
+        score.reset();
+        score.add(totalScore);
+        for (LongAdder adder : byPriority) adder.reset();
+        for (LongAdder adder : byClass) adder.reset();
+        for (LongAdder adder : byState) adder.reset();
+        for (MailItem mailItem : waiting) added(mailItem);
+        for (DelivererBehaviour robot : robots) {
+            byState[((Robot) robot).currentState.ordinal()].increment();
+        }
+        this.waitingRobots.reset();
+        this.waitingRobots.add(waitingRobots);
+    }
+
+    private static int priority(MailItem mailItem) {
+        if (!(mailItem instanceof PriorityMailItem)) return 0;
+        int level = ((PriorityMailItem) mailItem).getPriorityLevel();
+        return Math.max(0, Math.min(level, MAX_PRIORITY));
+    }
+
+    /**
+     * @return the kind of robot an item needs, as an index into CLASSES
+     */
+    private static int capability(MailItem mailItem) {
+        if (mailItem.getFragile()) return 2;
+        return mailItem.getWeight() >= WeakRobot.WEAK_ROBOT_MAX_WEIGHT ? 1 : 0;
+    }
+
+    @Override
+    public long getTicks() {
+        return ticks.sum();
+    }
+
+    @Override
+    public double getTicksPerSecond() {
+        return tickRate.perSecond();
+    }
+
+    @Override
+    public long getDeliveries() {
+        return deliveries.sum();
+    }
+
+    @Override
+    public double getDeliveriesPerSecond() {
+        return deliveryRate.perSecond();
+    }
+
+    @Override
+    public double getTotalScore() {
+        return score.sum();
+    }
+
+    @Override
+    public long getPoolDepth() {
+        long depth = 0;
+        for (LongAdder adder : byClass) depth += adder.sum();
+        return depth;
+    }
+
+    @Override
+    public Map<Integer, Long> getPoolDepthByPriority() {
+        Map<Integer, Long> depths = new TreeMap<>();
+        for (int level = 0; level <= MAX_PRIORITY; level++) {
+            long depth = byPriority[level].sum();
+            if (depth != 0) depths.put(level, depth);
+        }
+        return depths;
+    }
+
+    @Override
+    public Map<String, Long> getPoolDepthByClass() {
+        Map<String, Long> depths = new LinkedHashMap<>();
+        for (int i = 0; i < CLASSES.length; i++) {
+            depths.put(CLASSES[i], byClass[i].sum());
+        }
+        return depths;
+    }
+
+    @Override
+    public long getWaitingRobots() {
+        return waitingRobots.sum();
+    }
+
+    @Override
+    public Map<String, Long> getRobotStates() {
+        Map<String, Long> states = new LinkedHashMap<>();
+        for (Robot.RobotState state : Robot.RobotState.values()) {
+            states.put(state.name(), byState[state.ordinal()].sum());
+        }
+        return states;
+    }
+
+    @Override
+    public void mailArrived(int time, MailItem mailItem) {
+        events.mailArrived(time, mailItem);
+    }
+
+    @Override
+    public void mailReturned(int time, MailItem mailItem) {
+        events.mailReturned(time, mailItem);
+    }
+
+    @Override
+    public void stateChanged(int time, String robotId, int tubeSize,
+                             int tubeCapacity, Robot.RobotState from,
+                             Robot.RobotState to) {
+        byState[from.ordinal()].decrement();
+        byState[to.ordinal()].increment();
+        events.stateChanged(time, robotId, tubeSize, tubeCapacity, from, to);
+    }
+
+    @Override
+    public void routeSet(int time, String robotId, int tubeSize,
+                         int tubeCapacity, MailItem mailItem) {
+        events.routeSet(time, robotId, tubeSize, tubeCapacity, mailItem);
+    }
+
+    @Override
+    public void delivered(int time, MailItem mailItem) {
+        events.delivered(time, mailItem);
+    }
+
+    /**
+     * The rate at which a count goes up, worked out again when read at
+     * least a second after it last was.
+     */
+    private static final class Rate {
+
+        private static final long PERIOD = 1_000_000_000L;
+
+        private final LongAdder count;
+        private long lastTime = System.nanoTime();
+        private long lastCount;
+        private double perSecond;
+
+        Rate(LongAdder count) {
+            this.count = count;
+        }
+
+        synchronized double perSecond() {
+            long now = System.nanoTime();
+            if (now - lastTime >= PERIOD) {
+                long sum = count.sum();
+                perSecond = (sum - lastCount) * 1e9 / (now - lastTime);
+                lastTime = now;
+                lastCount = sum;
+            }
+            return perSecond;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package automail;
+
+import java.util.Map;
+
+/**
+ * What a running simulation publishes over JMX, read while it runs.
+ * Rates are over the last second or so before they were read.
+ */
+public interface LiveMetricsMXBean {
+
+    /**
+     * @return the simulated time, in ticks
+     */
+    long getTicks();
+
+    /**
+     * @return the ticks simulated per second of wall time
+     */
+    double getTicksPerSecond();
+
+    /**
+     * @return the number of items delivered
+     */
+    long getDeliveries();
+
+    /**
+     * @return the items delivered per second of wall time
+     */
+    double getDeliveriesPerSecond();
+
+    /**
+     * @return the score so far
+     */
+    double getTotalScore();
+
+    /**
+     * @return the number of items waiting in the mail pool
+     */
+    long getPoolDepth();
+
+    /**
+     * @return the items waiting in the mail pool by priority level, 0 for
+     * none, leaving out levels with nothing waiting
+     */
+    Map<Integer, Long> getPoolDepthByPriority();
+
+    /**
+     * @return the items waiting in the mail pool as light, heavy or fragile
+     */
+    Map<String, Long> getPoolDepthByClass();
+
+    /**
+     * @return the number of robots waiting in the mailroom to be loaded
+     */
+    long getWaitingRobots();
+
+    /**
+     * @return the number of robots in each state
+     */
+    Map<String, Long> getRobotStates();
+}
@@ -3,16 +3,17 @@ package automail;
 import java.util.*;
 
 import exceptions.NoValidRobotsAvailableException;
+import strategies.ArrivalForecast;
 import strategies.IMailPool;
 
 /**
  * This class generates the mail
  */
-public class MailGenerator {
+public class MailGenerator implements ArrivalForecast {
 
     public final int MAIL_TO_CREATE;
     
-    private final boolean handlingFragile;
+    protected final boolean handlingFragile;
 
     private int mailCreated;
 
@@ -20,18 +21,39 @@ public class MailGenerator {
     /** This seed is used to make the behaviour deterministic */
     
     private boolean complete;
-    private IMailPool mailPool;
+    protected final IMailPool mailPool;
+    protected final SimulationContext context;
 
     private HashMap<Integer,ArrayList<MailItem>> allMail;
 
+    /** The arrival times which already have a priority item */
+    private BitSet priorityTimes;
+
+    /** The fields of the mail item last drawn by drawMail */
+    protected int drawnFloor;
+    protected int drawnPriorityLevel;
+    protected int drawnArrival;
+    protected int drawnWeight;
+    protected boolean drawnFragile;
+    /** Whether the mail item last drawn should be a priority item */
+    protected boolean drawnPriority;
+
+    /** The arrival times of all mail, in ascending order */
+    private int[] arrivalTimes;
+    /** The index of the first arrival time not yet past */
+    private int nextArrival;
+
     /**
      * Constructor for mail generation
      * @param mailToCreate roughly how many mail items to create
      * @param mailPool where mail items go on arrival
      * @param seed random seed for generating mail
+     * @param context the simulation run the mail belongs to
      */
     public MailGenerator(int mailToCreate, IMailPool mailPool,
-                         HashMap<Boolean,Integer> seed, boolean fragile){
+                         HashMap<Boolean,Integer> seed, boolean fragile,
+                         SimulationContext context){
+        this.context = context;
         if(seed.containsKey(true)){
         	this.random = new Random((long) seed.get(true));
         }
@@ -45,52 +67,91 @@ public class MailGenerator {
         mailCreated = 0;
         complete = false;
         allMail = new HashMap<Integer,ArrayList<MailItem>>();
+        priorityTimes = new BitSet();
         this.mailPool = mailPool;
         handlingFragile = fragile;
     }
 
+    /**
+     * Constructor for mail that is not made up at random
+     * @param mailCount exactly how many mail items will arrive
+     * @param mailPool where mail items go on arrival
+     * @param context the simulation run the mail belongs to
+     */
+    protected MailGenerator(int mailCount, IMailPool mailPool,
+                            SimulationContext context){
+        this.context = context;
+        this.random = null;
+        MAIL_TO_CREATE = mailCount;
+        mailCreated = 0;
+        complete = true;
+        allMail = new HashMap<Integer,ArrayList<MailItem>>();
+        priorityTimes = new BitSet();
+        arrivalTimes = new int[0];
+        this.mailPool = mailPool;
+        handlingFragile = true;
+    }
+
     /**
      * @return a new mail item that needs to be delivered
      */
     private MailItem generateMail(){
-    	MailItem newMailItem;
-        int dest_floor = generateDestinationFloor();
-        int priority_level = generatePriorityLevel();
-        int arrival_time = generateArrivalTime();
-        int weight = generateWeight();
-    	boolean fragile = handlingFragile && (random.nextInt(8) == 0);
-        // Check if arrival time has a priority mail
-        if(	(random.nextInt(6) > 0) ||  // Skew towards non priority mail
-        	(allMail.containsKey(arrival_time) &&
-        	allMail.get(arrival_time).stream().
-                    anyMatch(e -> PriorityMailItem.class.isInstance(e))))
-        {
-        	newMailItem = new MailItem(dest_floor,arrival_time,weight,fragile);      	
-        } else {
-        	newMailItem = new PriorityMailItem
-                    (dest_floor,arrival_time,weight,fragile,priority_level);
+        drawMail(random);
+        // Only one priority item per arrival time
+        boolean priority = drawnPriority && !priorityTimes.get(drawnArrival);
+        if (priority) priorityTimes.set(drawnArrival);
+        return makeMail(context.MAIL_IDS.next(), priority);
+    }
+
+    /**
+     * Draws the fields of the next mail item from random, in the order they
+     * have always been drawn, so that a seed always gives the same mail
+     * @param random the source of the fields
+     */
+    protected void drawMail(Random random){
+        drawnFloor = generateDestinationFloor(random);
+        drawnPriorityLevel = generatePriorityLevel(random);
+        drawnArrival = generateArrivalTime(random);
+        drawnWeight = generateWeight(random);
+        drawnFragile = handlingFragile && (random.nextInt(8) == 0);
+        // Skew towards non priority mail
+        drawnPriority = random.nextInt(6) == 0;
+    }
+
+    /**
+     * Builds the mail item last drawn by drawMail
+     * @param number the number of the mail item within its run
+     * @param priority whether to make it a priority item
+     * @return the mail item
+     */
+    protected MailItem makeMail(int number, boolean priority){
+        if (priority) {
+            return new PriorityMailItem(number, drawnFloor, drawnArrival,
+                    drawnWeight, drawnFragile, drawnPriorityLevel);
         }
-        return newMailItem;
+        return new MailItem(number, drawnFloor, drawnArrival, drawnWeight,
+                drawnFragile);
     }
 
     /**
      * @return a destination floor between the ranges of GROUND_FLOOR to FLOOR
      */
-    private int generateDestinationFloor(){
-        return Building.LOWEST_FLOOR + random.nextInt(Building.FLOORS);
+    private int generateDestinationFloor(Random random){
+        return Building.LOWEST_FLOOR +
+                random.nextInt(context.BUILDING.FLOORS);
     }
 
     /**
      * @return a random priority level selected from 1 - 100
      */
-    private int generatePriorityLevel(){
+    private int generatePriorityLevel(Random random){
         return 10*(1 + random.nextInt(10));
     }
     
     /**
      * @return a random weight
      */
-    private int generateWeight(){
+    private int generateWeight(Random random){
     	final double mean = 200.0; // grams for normal item
     	final double stddev = 700.0; // grams
     	double base = random.nextGaussian();
@@ -102,8 +163,8 @@ public class MailGenerator {
     /**
      * @return a random arrival time before the last delivery time
      */
-    private int generateArrivalTime(){
-        return 1 + random.nextInt(Clock.LAST_DELIVERY_TIME);
+    private int generateArrivalTime(Random random){
+        return 1 + random.nextInt(context.CLOCK.LAST_DELIVERY_TIME);
     }
 
     /**
@@ -136,6 +197,9 @@ public class MailGenerator {
                 complete = true;
             }
         }
+        arrivalTimes = allMail.keySet().stream().mapToInt(Integer::intValue).
+                sorted().toArray();
+        nextArrival = 0;
 
     }
     
@@ -146,16 +210,53 @@ public class MailGenerator {
     public PriorityMailItem step() throws NoValidRobotsAvailableException {
     	PriorityMailItem priority = null;
     	// Check if there are any mail to create
-        if(this.allMail.containsKey(Clock.Time())){
-            for(MailItem mailItem : allMail.get(Clock.Time())){
+        int now = context.CLOCK.Time();
+        if(this.allMail.containsKey(now)){
+            for(MailItem mailItem : allMail.get(now)){
             	if (mailItem instanceof PriorityMailItem) priority =
                         ((PriorityMailItem) mailItem);
-                System.out.printf("T: %3d > new addToPool [%s]%n", Clock.Time(),
-                        mailItem.toString());
+                context.EVENTS.mailArrived(now, mailItem);
                 mailPool.addToPool(mailItem);
             }
         }
         return priority;
     }
     
+    /**
+     * @return the number of ticks until the next mail arrives, counting the
+     * current one, or Integer.MAX_VALUE if no more mail will arrive
+     */
+    public int ticksUntilNextArrival() {
+        int now = context.CLOCK.Time();
+        while (nextArrival < arrivalTimes.length &&
+                arrivalTimes[nextArrival] < now) {
+            nextArrival++;
+        }
+        if (nextArrival == arrivalTimes.length) return Integer.MAX_VALUE;
+        return arrivalTimes[nextArrival] - now;
+    }
+
+    /**
+     * Counts the items in the schedule arriving in the coming ticks.
+     * @param ticks how many ticks ahead to look
+     * @return the number of items arriving after the current tick, within
+     * that many ticks
+     */
+    @Override
+    public double expectedArrivals(int ticks) {
+        int now = context.CLOCK.Time();
+        int arrivals = 0;
+        for (int tick = now + 1; tick <= now + ticks; tick++) {
+            ArrayList<MailItem> mail = allMail.get(tick);
+            if (mail != null) arrivals += mail.size();
+        }
+        return arrivals;
+    }
+
+    /**
+     * Lets go of anything the mail is read from, once the run is over.
+     */
+    public void close() {
+    }
+
 }
@@ -1,8 +1,5 @@
 package automail;
 
-import java.util.Map;
-import java.util.TreeMap;
-
 // import java.util.UUID;
 
 /**
@@ -12,6 +9,8 @@ public class MailItem {
 	
     /** Represents the destination floor to which the mail is intended to go */
     protected final int destination_floor;
+    /** The dense mail number, used as the hash code */
+    protected final int number;
     /** The mail identifier */
     protected final String id;
     /** The time the mail item arrived */
@@ -23,21 +22,36 @@ public class MailItem {
 
     /**
      * Constructor for a MailItem
+     * @param number the dense number of this mail item within its run
      * @param dest_floor the destination floor intended for this mail item
      * @param arrival_time the time that the mail arrived
      * @param weight the weight of this mail item
      */
-    public MailItem(int dest_floor, int arrival_time, int weight,
+    public MailItem(int number, int dest_floor, int arrival_time, int weight,
                     boolean fragile){
         this.destination_floor = dest_floor;
-        this.id = String.valueOf(hashCode());
+        this.number = number;
+        this.id = String.valueOf(number);
         this.arrival_time = arrival_time;
         this.weight = weight;
         this.fragile = fragile;
     }
 
+    /** The description of the mail item, built on first use */
+    private String description;
+
     @Override
     public String toString(){
+        if (description == null) {
+            description = describe();
+        }
+        return description;
+    }
+
+    /**
+     * @return the description of the mail item
+     */
+    protected String describe(){
         return String.format("Mail Item:: ID: %6s | Arrival: %4d | " +
                 "Destination: %2d | Weight: %4d | Fragile: %3s", id,
                 arrival_time, destination_floor, weight, (fragile?"yes":"no") );
@@ -83,14 +97,8 @@ public class MailItem {
        return fragile;
    }
    
-	static private int count = 0;
-	static private Map<Integer, Integer> hashMap = new TreeMap<Integer, Integer>();
-
 	@Override
 	public int hashCode() {
-		Integer hash0 = super.hashCode();
-		Integer hash = hashMap.get(hash0);
-		if (hash == null) { hash = count++; hashMap.put(hash0, hash); }
-		return hash;
+		return number;
 	}
 }
@@ -0,0 +1,164 @@
+package automail;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * A log of mail arriving at a mailroom, read one item at a time:
+ * arrival time, destination floor, weight, whether fragile and priority
+ * level (0 for none), in order of arrival.
+ *
+ * A trace is either CSV, one item per line, or a compact binary file which
+ * is read through memory mapping and so never has to fit on the heap.
+ * A file ending in .csv is read as CSV and anything else as binary.
+ * Every item read is checked: the arrival time and priority level must not
+ * be negative, the floor must be at least the lowest floor and the weight
+ * must not be negative. A bad item stops the read with an IOException
+ * saying where it is in the trace.
+ *
+ * Usage: MailTrace in.csv out.trace
+ * Converts a CSV trace to the binary format.
+ */
+public abstract class MailTrace implements Closeable {
+
+    /** The fields of the item last read */
+    protected int arrival;
+    protected int floor;
+    protected int weight;
+    protected boolean fragile;
+    protected int priority;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: MailTrace in.csv out.trace");
+            return;
+        }
+        try (MailTrace trace = open(Paths.get(args[0]))) {
+            writeBinary(trace, Paths.get(args[1]));
+        }
+    }
+
+    /**
+     * Opens a trace, as CSV if its name ends in .csv and as binary if not.
+     *
+     * @param path the trace file
+     * @return the trace, before its first item
+     * @throws IOException if the trace can not be read
+     */
+    public static MailTrace open(Path path) throws IOException {
+        if (path.getFileName().toString().toLowerCase().endsWith(".csv")) {
+            return new CsvMailTrace(path);
+        }
+        return new BinaryMailTrace(path);
+    }
+
+    /**
+     * Writes a trace to a file in the binary format. The file is deleted
+     * again if any item can not be read or does not fit the format.
+     *
+     * @param trace the trace to copy, before its first item
+     * @param path  the binary file to write
+     * @throws IOException if either file fails
+     */
+    public static void writeBinary(MailTrace trace, Path path)
+            throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path)))) {
+            BinaryMailTrace.writeHeader(out, trace.count());
+            while (trace.next()) {
+                BinaryMailTrace.writeRecord(out, trace.arrival, trace.floor,
+                        trace.weight, trace.fragile, trace.priority,
+                        trace.position());
+            }
+        } catch (IOException e) {
+            // Leave no half written trace behind
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the number of items in the trace.
+     *
+     * @return the number of items
+     */
+    public abstract long count();
+
+    /**
+     * Moves on to the next item.
+     *
+     * @return false if there are no more items
+     * @throws IOException if the trace can not be read
+     */
+    public abstract boolean next() throws IOException;
+
+    /**
+     * Describes where the current item is in the trace, for error messages.
+     *
+     * @return the file and the line or record of the current item
+     */
+    public abstract String position();
+
+    /**
+     * Checks the fields of the item just read.
+     *
+     * @throws IOException if a field is out of range
+     */
+    protected void checkItem() throws IOException {
+        if (arrival < 0) {
+            throw new IOException(position() + ": negative arrival time " +
+                    arrival);
+        }
+        if (floor < Building.LOWEST_FLOOR) {
+            throw new IOException(position() + ": floor " + floor +
+                    " is below the lowest floor");
+        }
+        if (weight < 0) {
+            throw new IOException(position() + ": negative weight " + weight);
+        }
+        if (priority < 0) {
+            throw new IOException(position() + ": negative priority level " +
+                    priority);
+        }
+    }
+
+    /**
+     * @return the arrival time of the current item
+     */
+    public int getArrival() {
+        return arrival;
+    }
+
+    /**
+     * @return the destination floor of the current item
+     */
+    public int getFloor() {
+        return floor;
+    }
+
+    /**
+     * @return the weight in grams of the current item
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return whether the current item is fragile
+     */
+    public boolean getFragile() {
+        return fragile;
+    }
+
+    /**
+     * @return the priority level of the current item, 0 for none
+     */
+    public int getPriority() {
+        return priority;
+    }
+}
@@ -0,0 +1,90 @@
+package automail;
+
+import java.util.List;
+
+import exceptions.FragileItemBrokenException;
+import exceptions.NoValidRobotsAvailableException;
+import strategies.DispatchPolicy;
+import strategies.IMailPool;
+
+/**
+ * Wraps a mail pool to keep the live counts of the items and robots waiting
+ * in it. An item leaves the pool when a robot it was loaded onto sets off,
+ * and so is counted out then, along with the rest of that robot's load.
+ */
+class MonitoredMailPool implements IMailPool {
+
+    private final IMailPool mailPool;
+    private final LiveMetrics live;
+
+    /**
+     * Instantiates the wrapper.
+     *
+     * @param mailPool the mail pool being counted
+     * @param live     the counts to keep
+     */
+    MonitoredMailPool(IMailPool mailPool, LiveMetrics live) {
+        this.mailPool = mailPool;
+        this.live = live;
+    }
+
+    @Override
+    public void addToPool(MailItem mailItem)
+            throws NoValidRobotsAvailableException {
+        mailPool.addToPool(mailItem);
+        live.added(mailItem);
+    }
+
+    @Override
+    public void step() throws FragileItemBrokenException {
+        mailPool.step();
+    }
+
+    @Override
+    public void registerWaiting(Robot robot) {
+        mailPool.registerWaiting(robot);
+        live.waiting(1);
+    }
+
+    @Override
+    public void deregisterWaiting(Robot robot) {
+        mailPool.deregisterWaiting(robot);
+        live.waiting(-1);
+        // The robot has taken its first item off the tube to deliver
+        if (robot.getDeliveryItem() != null) {
+            live.loaded(robot.getDeliveryItem());
+        }
+        StorageTube tube = robot.getTube();
+        for (int i = 0; i < tube.getSize(); i++) live.loaded(tube.get(i));
+    }
+
+    @Override
+    public boolean isIdle() {
+        return mailPool.isIdle();
+    }
+
+    @Override
+    public boolean canHold() {
+        return mailPool.canHold();
+    }
+
+    @Override
+    public void setDispatchPolicy(DispatchPolicy policy) {
+        mailPool.setDispatchPolicy(policy);
+    }
+
+    @Override
+    public boolean canSnapshot() {
+        return mailPool.canSnapshot();
+    }
+
+    @Override
+    public List<MailItem> getWaitingItems() {
+        return mailPool.getWaitingItems();
+    }
+
+    @Override
+    public List<Robot> getWaitingRobots() {
+        return mailPool.getWaitingRobots();
+    }
+}
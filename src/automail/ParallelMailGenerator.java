@@ -0,0 +1,312 @@
+package automail;
+
+import java.util.HashMap;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import exceptions.NoValidRobotsAvailableException;
+import strategies.IMailPool;
+
+/**
+ * Makes mail up on several threads, for runs with far too much mail to make
+ * one item at a time.
+ *
+ * The day is cut into partitions of consecutive ticks, each made from its
+ * own SplittableRandom split off the seeded one. The partitions are set by
+ * how much mail there is and how long the day is, never by how many
+ * threads there are, so a seed makes the same mail on any machine. The
+ * number of items arriving at each tick is drawn first, then every item is
+ * made within its own tick's partition, so the one priority item a tick may
+ * have is chosen without looking at any other partition.
+ *
+ * This is not the same mail as MailGenerator makes from the same seed: the
+ * items arriving at each tick are a Poisson draw around the mean rate, so
+ * the total varies a little around the number drawn.
+ */
+public class ParallelMailGenerator extends MailGenerator {
+
+    /** Roughly how many items each partition makes */
+    private static final int ITEMS_PER_PARTITION = 1 << 16;
+    /** The largest mean drawn as a single Poisson draw */
+    private static final double POISSON_CHUNK = 16.0;
+
+    private final boolean fragile;
+    private final int threads;
+    private final Schedule schedule;
+    /** The mail, in order of arrival, numbered on from firstNumber */
+    private MailItem[] mail;
+    private final int firstNumber;
+    /** The first tick not yet past with mail arriving */
+    private int nextArrival;
+
+    /**
+     * Constructor for parallel mail generation
+     * @param mailToCreate roughly how many mail items to create
+     * @param mailPool where mail items go on arrival
+     * @param seed random seed for generating mail
+     * @param fragile whether fragile mail is made
+     * @param threads how many threads to make the mail on
+     * @param context the simulation run the mail belongs to
+     */
+    public ParallelMailGenerator(int mailToCreate, IMailPool mailPool,
+                                 HashMap<Boolean,Integer> seed,
+                                 boolean fragile, int threads,
+                                 SimulationContext context){
+        this(mailPool, fragile, threads, context, Schedule.draw(mailToCreate,
+                seed.containsKey(true) ?
+                        new SplittableRandom(seed.get(true)) :
+                        new SplittableRandom(),
+                context.CLOCK.LAST_DELIVERY_TIME, threads));
+    }
+
+    private ParallelMailGenerator(IMailPool mailPool, boolean fragile,
+                                  int threads, SimulationContext context,
+                                  Schedule schedule){
+        super(schedule.total(), mailPool, context);
+        this.fragile = fragile;
+        this.threads = threads;
+        this.schedule = schedule;
+        this.firstNumber = context.MAIL_IDS.reserve(schedule.total());
+        this.nextArrival = 1;
+    }
+
+    /**
+     * The number of items arriving at each tick, and the random streams the
+     * partitions of ticks are made from.
+     */
+    private static final class Schedule {
+
+        /** The first item of each tick, then the total, from tick 1 on */
+        final int[] firstItem;
+        /** The first tick of each partition, then the tick after the last */
+        final int[] firstTick;
+        final SplittableRandom[] streams;
+
+        private Schedule(int[] firstItem, int[] firstTick,
+                         SplittableRandom[] streams) {
+            this.firstItem = firstItem;
+            this.firstTick = firstTick;
+            this.streams = streams;
+        }
+
+        int total() {
+            return firstItem[firstItem.length - 1];
+        }
+
+        /**
+         * Draws how many items arrive at each tick, each partition from
+         * its own stream.
+         */
+        static Schedule draw(int mailToCreate, SplittableRandom random,
+                             int lastTick, int threads) {
+            // Vary arriving mail by +/-20%, as MailGenerator does
+            int target = mailToCreate*4/5 + random.nextInt(mailToCreate*2/5);
+            double perTick = (double) target / lastTick;
+            int ticksPerPartition = (int) Math.min(lastTick,
+                    Math.max(1, Math.ceil(ITEMS_PER_PARTITION / perTick)));
+            int partitions = (lastTick + ticksPerPartition - 1) /
+                    ticksPerPartition;
+            int[] firstTick = new int[partitions + 1];
+            SplittableRandom[] streams = new SplittableRandom[partitions];
+            for (int i = 0; i < partitions; i++) {
+                firstTick[i] = 1 + i * ticksPerPartition;
+                streams[i] = random.split();
+            }
+            firstTick[partitions] = lastTick + 1;
+
+            // Counted per tick, then summed into where each tick starts
+            int[] firstItem = new int[lastTick + 2];
+            inParallel(threads, partitions, partition -> {
+                SplittableRandom stream = streams[partition];
+                for (int tick = firstTick[partition];
+                     tick < firstTick[partition + 1]; tick++) {
+                    firstItem[tick + 1] = poisson(stream, perTick);
+                }
+            });
+            for (int tick = 1; tick <= lastTick; tick++) {
+                firstItem[tick + 1] += firstItem[tick];
+            }
+            return new Schedule(firstItem, firstTick, streams);
+        }
+    }
+
+    /**
+     * Runs a piece of work for each partition on a pool of its own, which
+     * is shut down again before returning.
+     * @param threads how many threads to run on
+     * @param partitions how many partitions there are
+     * @param work the work on one partition
+     */
+    private static void inParallel(int threads, int partitions,
+                                   Partitions.Work work){
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new Partitions(0, partitions, work));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Draws from a Poisson distribution, a chunk of the mean at a time so
+     * that a large mean does not underflow.
+     * @param random the source of the draw
+     * @param mean the mean of the distribution
+     * @return the number drawn
+     */
+    private static int poisson(SplittableRandom random, double mean){
+        int count = 0;
+        for (double left = mean; left > 0; left -= POISSON_CHUNK) {
+            double limit = Math.exp(-Math.min(left, POISSON_CHUNK));
+            double product = random.nextDouble();
+            while (product > limit) {
+                count++;
+                product *= random.nextDouble();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Draws from a normal distribution by the polar method, as
+     * Random.nextGaussian does.
+     * @param random the source of the draw
+     * @return the number drawn
+     */
+    private static double gaussian(SplittableRandom random){
+        double x, y, s;
+        do {
+            x = 2 * random.nextDouble() - 1;
+            y = 2 * random.nextDouble() - 1;
+            s = x * x + y * y;
+        } while (s >= 1 || s == 0);
+        return x * Math.sqrt(-2 * Math.log(s) / s);
+    }
+
+    /**
+     * Makes all the mail of the schedule, a partition of ticks at a time.
+     */
+    @Override
+    public void generateAllMail(){
+        int[] firstItem = schedule.firstItem;
+        int[] firstTick = schedule.firstTick;
+        mail = new MailItem[schedule.total()];
+        inParallel(threads, schedule.streams.length, partition -> {
+            SplittableRandom random = schedule.streams[partition];
+            for (int tick = firstTick[partition];
+                 tick < firstTick[partition + 1]; tick++) {
+                boolean priorityTaken = false;
+                for (int i = firstItem[tick]; i < firstItem[tick + 1]; i++) {
+                    mail[i] = makeMail(random, firstNumber + i, tick,
+                            !priorityTaken);
+                    priorityTaken |= mail[i] instanceof PriorityMailItem;
+                }
+            }
+        });
+    }
+
+    /**
+     * Makes an item, drawing its fields in the order MailGenerator does.
+     * @param random the source of the fields
+     * @param number the number of the mail item within its run
+     * @param arrival the arrival time
+     * @param priorityFree whether the tick has no priority item yet
+     * @return the mail item
+     */
+    private MailItem makeMail(SplittableRandom random, int number,
+                              int arrival, boolean priorityFree){
+        int floor = Building.LOWEST_FLOOR +
+                random.nextInt(context.BUILDING.FLOORS);
+        int priorityLevel = 10*(1 + random.nextInt(10));
+        int weight = (int) (200.0 + Math.abs(gaussian(random)) * 700.0);
+        if (weight > 5000) weight = 5000;
+        boolean itemFragile = fragile && (random.nextInt(8) == 0);
+        // Skew towards non priority mail, one priority item per tick
+        if (random.nextInt(6) == 0 && priorityFree) {
+            return new PriorityMailItem(number, floor, arrival, weight,
+                    itemFragile, priorityLevel);
+        }
+        return new MailItem(number, floor, arrival, weight, itemFragile);
+    }
+
+    @Override
+    public PriorityMailItem step() throws NoValidRobotsAvailableException {
+        PriorityMailItem priority = null;
+        int now = context.CLOCK.Time();
+        int[] firstItem = schedule.firstItem;
+        if (now < 1 || now >= firstItem.length - 1) return null;
+        for (int i = firstItem[now]; i < firstItem[now + 1]; i++) {
+            MailItem mailItem = mail[i];
+            // Let the item go once the pool has it
+            mail[i] = null;
+            if (mailItem instanceof PriorityMailItem) priority =
+                    ((PriorityMailItem) mailItem);
+            context.EVENTS.mailArrived(now, mailItem);
+            mailPool.addToPool(mailItem);
+        }
+        return priority;
+    }
+
+    @Override
+    public int ticksUntilNextArrival() {
+        int now = context.CLOCK.Time();
+        int[] firstItem = schedule.firstItem;
+        int lastTick = firstItem.length - 2;
+        if (nextArrival < now) nextArrival = now;
+        while (nextArrival <= lastTick &&
+                firstItem[nextArrival] == firstItem[nextArrival + 1]) {
+            nextArrival++;
+        }
+        if (nextArrival > lastTick) return Integer.MAX_VALUE;
+        return nextArrival - now;
+    }
+
+    @Override
+    public double expectedArrivals(int ticks) {
+        int now = context.CLOCK.Time();
+        return itemsBefore((long) now + ticks + 1) - itemsBefore(now + 1);
+    }
+
+    /**
+     * @return the number of items arriving before a tick
+     */
+    private int itemsBefore(long tick) {
+        int[] firstItem = schedule.firstItem;
+        return firstItem[(int) Math.max(1, Math.min(tick,
+                firstItem.length - 1))];
+    }
+
+    /**
+     * Runs a piece of work for each partition in [from, to), splitting the
+     * range across the pool's threads.
+     */
+    private static final class Partitions extends RecursiveAction {
+
+        /** The work on one partition */
+        interface Work {
+            void on(int partition);
+        }
+
+        private final int from;
+        private final int to;
+        private final Work work;
+
+        Partitions(int from, int to, Work work) {
+            this.from = from;
+            this.to = to;
+            this.work = work;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Partitions(from, middle, work),
+                        new Partitions(middle, to, work));
+            } else if (to > from) {
+                work.on(from);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package automail;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import exceptions.ExcessiveDeliveryException;
+import exceptions.FragileItemBrokenException;
+import exceptions.ItemTooHeavyException;
+import exceptions.NoValidRobotsAvailableException;
+import strategies.IMailPool;
+
+/**
+ * Steps a fleet of robots on several threads.
+ * Each tick goes in two phases. First every robot steps at once, its calls
+ * to the mail pool, the delivery report and the event log being recorded
+ * in its own {@link RobotIntents}. Then the recorded calls are applied
+ * robot by robot in fleet order, which is the order they would have been
+ * made in stepping the robots one after another, so a run comes out exactly
+ * the same.
+ */
+public class ParallelRobotStepper {
+
+    /** The fewest robots worth handing to a thread of their own */
+    private static final int MIN_ROBOTS_PER_TASK = 16;
+
+    private final Robot[] robots;
+    private final RobotIntents[] intents;
+    private final Throwable[] failures;
+    private final IMailPool mailPool;
+    private final IMailDelivery delivery;
+    private final EventSink events;
+    private final ForkJoinPool pool;
+    private final int robotsPerTask;
+
+    /**
+     * Instantiates a new ParallelRobotStepper, taking over what the robots
+     * send to the mail pool, the delivery report and the event log.
+     *
+     * @param robots   the fleet, in stepping order
+     * @param mailPool the mail pool of the fleet
+     * @param delivery the delivery report of the fleet
+     * @param events   the event log of the run
+     * @param threads  how many threads to step the robots on
+     */
+    public ParallelRobotStepper(DelivererBehaviour[] robots,
+                                IMailPool mailPool, IMailDelivery delivery,
+                                EventSink events, int threads) {
+        this.robots = new Robot[robots.length];
+        this.intents = new RobotIntents[robots.length];
+        this.failures = new Throwable[robots.length];
+        for (int i = 0; i < robots.length; i++) {
+            this.robots[i] = (Robot) robots[i];
+            this.intents[i] = new RobotIntents(this.robots[i]);
+            this.robots[i].redirect(intents[i], intents[i], intents[i]);
+        }
+        this.mailPool = mailPool;
+        this.delivery = delivery;
+        this.events = events;
+        this.pool = new ForkJoinPool(threads);
+        this.robotsPerTask = Math.max(MIN_ROBOTS_PER_TASK,
+                robots.length / (threads * 4) + 1);
+    }
+
+    /**
+     * Steps the robots [from, to), splitting the range while it is large.
+     */
+    private class StepRange extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        StepRange(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > robotsPerTask) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new StepRange(from, middle),
+                        new StepRange(middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                try {
+                    robots[i].step();
+                } catch (Throwable e) {
+                    failures[i] = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Steps every robot once, then applies what they did in fleet order.
+     * If a robot fails, what it did before failing is applied and the robots
+     * after it are left uncommitted, as if they had not stepped.
+     */
+    public void step() throws ExcessiveDeliveryException,
+            ItemTooHeavyException, FragileItemBrokenException,
+            NoValidRobotsAvailableException {
+        pool.invoke(new StepRange(0, robots.length));
+        for (int i = 0; i < robots.length; i++) {
+            intents[i].commit(mailPool, delivery, events);
+            Throwable failure = failures[i];
+            if (failure != null) {
+                failures[i] = null;
+                rethrow(failure);
+            }
+        }
+    }
+
+    private static void rethrow(Throwable failure)
+            throws ExcessiveDeliveryException, ItemTooHeavyException,
+            FragileItemBrokenException, NoValidRobotsAvailableException {
+        if (failure instanceof ExcessiveDeliveryException) {
+            throw (ExcessiveDeliveryException) failure;
+        } else if (failure instanceof ItemTooHeavyException) {
+            throw (ItemTooHeavyException) failure;
+        } else if (failure instanceof FragileItemBrokenException) {
+            throw (FragileItemBrokenException) failure;
+        } else if (failure instanceof NoValidRobotsAvailableException) {
+            throw (NoValidRobotsAvailableException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        throw (Error) failure;
+    }
+
+    /**
+     * Stops the threads.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
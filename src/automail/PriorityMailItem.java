@@ -12,15 +12,16 @@ public class PriorityMailItem extends MailItem{
     /**
      * Instantiates a new Priority mail item.
      *
+     * @param number         the dense number within its run
      * @param dest_floor     the destination floor
      * @param arrival_time   the arrival time
      * @param weight         the weight
      * @param fragile        the fragile
      * @param priority_level the priority level
      */
-    public PriorityMailItem(int dest_floor, int arrival_time, int weight,
-                            boolean fragile, int priority_level) {
-		super(dest_floor, arrival_time, weight, fragile);
+    public PriorityMailItem(int number, int dest_floor, int arrival_time,
+                            int weight, boolean fragile, int priority_level) {
+		super(number, dest_floor, arrival_time, weight, fragile);
         this.PRIORITY_LEVEL = priority_level;
 	}
 
@@ -34,8 +35,8 @@ public class PriorityMailItem extends MailItem{
    }
    
    @Override
-   public String toString(){
-       return super.toString() + String.format(" | Priority: %3d",
+   protected String describe(){
+       return super.describe() + String.format(" | Priority: %3d",
                PRIORITY_LEVEL);
    }
 
@@ -4,13 +4,16 @@
 
 package automail;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 import exceptions.ExcessiveDeliveryException;
 import exceptions.ItemTooHeavyException;
 import exceptions.FragileItemBrokenException;
 import exceptions.NoValidRobotsAvailableException;
+import exceptions.TubeFullException;
 import strategies.IMailPool;
-import java.util.Map;
-import java.util.TreeMap;
 
 /**
  * The robot delivers mail!
@@ -27,6 +30,21 @@ public abstract class Robot implements DelivererBehaviour {
      */
     IMailDelivery delivery;
 
+    /**
+     * The simulation run the robot belongs to.
+     */
+    protected final SimulationContext context;
+
+    /**
+     * Where the robot reports what it does.
+     */
+    private EventSink events;
+
+    /**
+     * The dense number of a robot, used as the hash code.
+     */
+    private final int number;
+
     /**
      * The Id of a robot.
      */
@@ -67,6 +85,22 @@ public abstract class Robot implements DelivererBehaviour {
      */
     private boolean strong;
 
+    /**
+     * how many steps the robot takes to move one floor
+     */
+    private final int stepsPerFloor;
+
+    /**
+     * whether the robot can carry fragile items
+     */
+    private final boolean carriesFragile;
+
+    /**
+     * how many steps the robot has already spent on the floor it is moving
+     * through, always less than stepsPerFloor
+     */
+    private int moveProgress;
+
     /**
      * the standard maximum items a robot can carry
      */
@@ -82,6 +116,16 @@ public abstract class Robot implements DelivererBehaviour {
      */
     private int deliveryCounter;
 
+    /**
+     * how many trips the robot has set off on
+     */
+    private int trips;
+
+    /**
+     * how many floors the robot has moved
+     */
+    private long floorsTravelled;
+
 
     /**
      * Initiates the robot's location at the start to be at the mailroom
@@ -90,15 +134,38 @@ public abstract class Robot implements DelivererBehaviour {
      * @param delivery governs the final delivery
      * @param mailPool is the source of mail items
      * @param strong   is whether the robot can carry heavy items
+     * @param context  is the simulation run the robot belongs to
      */
     public Robot(IMailDelivery delivery, IMailPool mailPool,
-                     boolean strong){
-    	id = "R" + hashCode();
+                     boolean strong, SimulationContext context){
+        this(delivery, mailPool, strong, 1, false, context);
+    }
+
+    /**
+     * Initiates a robot which moves at its own pace and may carry fragile
+     * items.
+     *
+     * @param delivery       governs the final delivery
+     * @param mailPool       is the source of mail items
+     * @param strong         is whether the robot can carry heavy items
+     * @param stepsPerFloor  is how many steps the robot takes per floor
+     * @param carriesFragile is whether the robot can carry fragile items
+     * @param context        is the simulation run the robot belongs to
+     */
+    protected Robot(IMailDelivery delivery, IMailPool mailPool,
+                    boolean strong, int stepsPerFloor, boolean carriesFragile,
+                    SimulationContext context){
+    	this.context = context;
+    	this.stepsPerFloor = stepsPerFloor;
+    	this.carriesFragile = carriesFragile;
+    	number = context.ROBOT_IDS.next();
+    	id = "R" + number;
     	currentState = RobotState.RETURNING;
         currentFloor = Building.MAILROOM_LOCATION;
         tube = new StorageTube();
         this.delivery = delivery;
         this.mailPool = mailPool;
+        this.events = context.EVENTS;
         this.receivedDispatch = false;
         this.strong = strong;
         this.deliveryCounter = 0;
@@ -121,9 +188,13 @@ public abstract class Robot implements DelivererBehaviour {
     }
 
     /**
-     * This is called on every time step
+     * This is called on every time step. Only moving is done here; arriving,
+     * setting off and delivering are done out of line, so that the step of
+     * a moving robot stays small enough to be inlined where it is called.
      * @throws ExcessiveDeliveryException if robot delivers more than the
      * capacity of the tube without refilling
+     * @throws FragileItemBrokenException if the robot is dispatched with a
+     * fragile item it can not carry
      */
     public void step() throws ExcessiveDeliveryException, ItemTooHeavyException,
             FragileItemBrokenException, NoValidRobotsAvailableException {
@@ -133,21 +204,7 @@ public abstract class Robot implements DelivererBehaviour {
              *  mailroom after a delivery
              */
     		case RETURNING:
-    			/**
-                 * If its current position is at the mailroom, then the robot
-                 * should change state
-                 */
-                if(currentFloor == Building.MAILROOM_LOCATION){
-                	while(!tube.isEmpty()) {
-                		MailItem mailItem = tube.pop();
-                		mailPool.addToPool(mailItem);
-                        System.out.printf("T: %3d > old addToPool [%s]%n",
-                                Clock.Time(), mailItem.toString());
-                	}
-        			/** Tell the sorter the robot is ready */
-        			mailPool.registerWaiting(this);
-                	changeState(RobotState.WAITING);
-                } else {
+                if(currentFloor != Building.MAILROOM_LOCATION){
                 	/**
                      * If the robot is not at the mailroom floor yet, then move
                      * towards it!
@@ -155,56 +212,92 @@ public abstract class Robot implements DelivererBehaviour {
                     moveTowards(Building.MAILROOM_LOCATION);
                 	break;
                 }
+                arrive();
     		case WAITING:
                 /**
                  * If the StorageTube is ready and the Robot is waiting in the
                  * mailroom then start the delivery
                  */
-                if(!tube.isEmpty() && receivedDispatch){
-                	receivedDispatch = false;
-                	deliveryCounter = 0; // reset delivery counter
-        			setRoute();
-        			mailPool.deregisterWaiting(this);
-                	changeState(RobotState.DELIVERING);
+                if(receivedDispatch && !tube.isEmpty()){
+                	setOff();
                 }
-
                 break;
     		case DELIVERING:
-    		    // reaching the destination floor
-    			if(currentFloor == destinationFloor){
-                    /** Delivery complete, report this to the simulator! */
-                    delivery.deliver(deliveryItem);
-                    deliveryCounter++;
-
-                    // Implies a simulation bug
-                    if(deliveryCounter > maxItems){
-                    	throw new ExcessiveDeliveryException();
-                    }
-                    /**
-                     * Check if want to return, i.e. if there are no more items
-                     * in the tube
-                     */
-                    if(tube.isEmpty()){
-                    	changeState(RobotState.RETURNING);
-                    }
-                    else{
-                        /**
-                         * If there are more items, set the robot's route to the
-                         * location to deliver the item
-                         */
-                        setRoute();
-                        changeState(RobotState.DELIVERING);
-                    }
-    			} else {
+    			if(currentFloor != destinationFloor){
 	        		/** The robot is not at the destination yet, move towards
                      * it!
                      */
 	                moveTowards(destinationFloor);
+    			} else {
+    			    deliverItem();
     			}
                 break;
     	}
     }
 
+    /**
+     * Hands back anything left in the tube on reaching the mailroom, then
+     * waits to be loaded.
+     */
+    private void arrive() throws NoValidRobotsAvailableException {
+        while(!tube.isEmpty()) {
+            MailItem mailItem = tube.pop();
+            mailPool.addToPool(mailItem);
+            events.mailReturned(context.CLOCK.Time(), mailItem);
+        }
+        /** Tell the sorter the robot is ready */
+        mailPool.registerWaiting(this);
+        changeState(RobotState.WAITING);
+    }
+
+    /**
+     * Sets off from the mailroom with the items in the tube.
+     */
+    private void setOff() throws ItemTooHeavyException,
+            FragileItemBrokenException {
+        // Checked once per trip rather than on every floor
+        if (!carriesFragile && tube.getFragileCount() > 0)
+            throw new FragileItemBrokenException();
+        receivedDispatch = false;
+        deliveryCounter = 0; // reset delivery counter
+        trips++;
+        context.ROUTE_PLANNER.plan(tube, currentFloor);
+        setRoute();
+        mailPool.deregisterWaiting(this);
+        changeState(RobotState.DELIVERING);
+    }
+
+    /**
+     * Delivers the item for the floor the robot has reached, then heads for
+     * the next one or back to the mailroom.
+     */
+    private void deliverItem() throws ExcessiveDeliveryException,
+            ItemTooHeavyException {
+        /** Delivery complete, report this to the simulator! */
+        delivery.deliver(deliveryItem, this);
+        deliveryCounter++;
+
+        // Implies a simulation bug
+        if(deliveryCounter > maxItems){
+            throw new ExcessiveDeliveryException();
+        }
+        /**
+         * Check if want to return, i.e. if there are no more items
+         * in the tube
+         */
+        if(tube.isEmpty()){
+            changeState(RobotState.RETURNING);
+        }
+        else{
+            /**
+             * If there are more items, set the robot's route to the
+             * location to deliver the item
+             */
+            setRoute();
+            changeState(RobotState.DELIVERING);
+        }
+    }
+
     /**
      * Sets the route for the robot
      */
@@ -221,41 +314,125 @@ public abstract class Robot implements DelivererBehaviour {
      * Generic function that moves the robot towards the destination
      * @param destination the floor towards which the robot is moving
      */
-    public void moveTowards(int destination) throws FragileItemBrokenException {
-
+    public void moveTowards(int destination) {
+        if (++moveProgress < stepsPerFloor) return;
+        moveProgress = 0;
+        moveBy(destination, 1);
+    }
 
-        // preventing robots that are not certain types to carry fragile items
-        if (!(this instanceof CarefulRobot) && ( deliveryItem != null &&
-                deliveryItem.getFragile() ||
-                !tube.isEmpty() && tube.peek().getFragile()))
-            throw new FragileItemBrokenException();
+    /**
+     * Moves the robot a number of floors towards the destination at once
+     * @param destination the floor towards which the robot is moving
+     * @param floors how many floors to move, at most the distance left
+     */
+    protected void moveBy(int destination, int floors) {
+        floorsTravelled += floors;
         if(currentFloor < destination){
-            currentFloor++;
+            currentFloor += floors;
         }
         else{
-            currentFloor--;
+            currentFloor -= floors;
         }
     }
-    
-    private String getIdTube() {
-    	return String.format("%s(%1d/%1d)", id, tube.getSize(), getTube().getMaximumTubeSize());
+
+    /**
+     * Counts the coming steps which would do nothing but move the robot
+     * towards the floor it is heading for.
+     *
+     * @return the number of such steps, or Integer.MAX_VALUE if the robot is
+     * waiting to be dispatched by the mail pool
+     */
+    public int idleSteps() {
+        switch (currentState) {
+            case RETURNING:
+                return stepsToReach(Building.MAILROOM_LOCATION);
+            case DELIVERING:
+                return stepsToReach(destinationFloor);
+            default:
+                return !tube.isEmpty() && receivedDispatch ? 0 :
+                        Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Makes a number of steps at once, no more than {@link #idleSteps()}.
+     *
+     * @param steps the number of steps to make
+     */
+    public void skipSteps(int steps) {
+        if (steps <= 0) return;
+        switch (currentState) {
+            case RETURNING:
+                skipMoves(Building.MAILROOM_LOCATION, steps);
+                break;
+            case DELIVERING:
+                skipMoves(destinationFloor, steps);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Counts the steps needed to reach a floor.
+     *
+     * @param floor the floor to reach
+     * @return the number of steps
+     */
+    protected int stepsToReach(int floor) {
+        // Part of the first floor may have been moved already
+        int floors = Math.abs(floor - currentFloor);
+        return floors == 0 ? 0 : floors * stepsPerFloor - moveProgress;
+    }
+
+    /**
+     * Makes a number of steps towards a floor at once, no more than it takes
+     * to reach it.
+     *
+     * @param destination the floor towards which the robot is moving
+     * @param steps the number of steps to make
+     */
+    protected void skipMoves(int destination, int steps) {
+        int progress = moveProgress + steps;
+        moveProgress = progress % stepsPerFloor;
+        if (progress >= stepsPerFloor) {
+            moveBy(destination, progress / stepsPerFloor);
+        }
     }
 
     /**
-     * Prints out the change in state
+     * Reports the change in state
      *
      * @param nextState the state to which the robot is transitioning
      */
     public void changeState(RobotState nextState){
     	if (currentState != nextState) {
-            System.out.printf("T: %3d > %7s changed from %s to %s%n", Clock.Time(), getIdTube(), currentState, nextState);
+            events.stateChanged(context.CLOCK.Time(), id,
+                    tube.getSize(), tube.getMaximumTubeSize(), currentState,
+                    nextState);
     	}
     	currentState = nextState;
     	if(nextState == RobotState.DELIVERING){
-            System.out.printf("T: %3d > %7s-> [%s]%n", Clock.Time(), getIdTube(), deliveryItem.toString());
+            events.routeSet(context.CLOCK.Time(), id, tube.getSize(),
+                    tube.getMaximumTubeSize(), deliveryItem);
     	}
     }
 
+    /**
+     * Sends what the robot does to the mail pool, the delivery report and
+     * the event log somewhere else, such as a buffer applied later on.
+     *
+     * @param mailPool the stand-in for the mail pool
+     * @param delivery the stand-in for the delivery report
+     * @param events   the stand-in for the event log
+     */
+    void redirect(IMailPool mailPool, IMailDelivery delivery,
+                  EventSink events) {
+        this.mailPool = mailPool;
+        this.delivery = delivery;
+        this.events = events;
+    }
+
     /**
      * Sets current floor.
      *
@@ -274,8 +451,6 @@ public abstract class Robot implements DelivererBehaviour {
 		return tube;
 	}
     
-	static private int count = 0;
-	static private Map<Integer, Integer> hashMap = new TreeMap<Integer, Integer>();
 
     /**
      * Gets mail pool.
@@ -340,6 +515,24 @@ public abstract class Robot implements DelivererBehaviour {
         return deliveryCounter;
     }
 
+    /**
+     * Gets the number of trips the robot has set off on.
+     *
+     * @return the number of trips
+     */
+    public int getTrips() {
+        return trips;
+    }
+
+    /**
+     * Gets the number of floors the robot has moved.
+     *
+     * @return the number of floors
+     */
+    public long getFloorsTravelled() {
+        return floorsTravelled;
+    }
+
     /**
      * Sets received dispatch.
      *
@@ -377,11 +570,63 @@ public abstract class Robot implements DelivererBehaviour {
         this.tube.setMaximumTubeSize(maxItems);
     }
 
+    /**
+     * Writes where the robot is and what it carries to a snapshot.
+     *
+     * @param out the snapshot
+     * @throws IOException if the snapshot can not be written
+     */
+    void writeState(DataOutputStream out) throws IOException {
+        out.writeByte(currentState.ordinal());
+        out.writeInt(currentFloor);
+        out.writeInt(destinationFloor);
+        out.writeInt(moveProgress);
+        out.writeBoolean(receivedDispatch);
+        out.writeInt(deliveryCounter);
+        out.writeInt(trips);
+        out.writeLong(floorsTravelled);
+        SimulationSnapshot.writeItem(out, deliveryItem);
+        // Bottom of the tube first
+        out.writeByte(tube.getSize());
+        for (int i = tube.getSize() - 1; i >= 0; i--) {
+            SimulationSnapshot.writeItem(out, tube.get(i));
+        }
+    }
+
+    /**
+     * Puts the robot back where a snapshot says it was, without reporting
+     * anything.
+     *
+     * @param in the snapshot
+     * @throws IOException if the snapshot can not be read
+     */
+    void readState(DataInputStream in) throws IOException {
+        currentState = RobotState.values()[in.readByte()];
+        currentFloor = in.readInt();
+        destinationFloor = in.readInt();
+        moveProgress = in.readInt();
+        if (moveProgress < 0 || moveProgress >= stepsPerFloor) {
+            throw new IOException("Snapshot puts " + id + " part way " +
+                    "through a floor it can not be");
+        }
+        receivedDispatch = in.readBoolean();
+        deliveryCounter = in.readInt();
+        trips = in.readInt();
+        floorsTravelled = in.readLong();
+        deliveryItem = SimulationSnapshot.readItem(in);
+        while (!tube.isEmpty()) tube.pop();
+        int size = in.readByte();
+        try {
+            for (int i = 0; i < size; i++) {
+                tube.addItem(SimulationSnapshot.readItem(in));
+            }
+        } catch (TubeFullException e) {
+            throw new IOException("Snapshot overfills the tube of " + id);
+        }
+    }
+
     @Override
 	public int hashCode() {
-		Integer hash0 = super.hashCode();
-		Integer hash = hashMap.get(hash0);
-		if (hash == null) { hash = count++; hashMap.put(hash0, hash); }
-		return hash;
+		return number;
 	}
 }
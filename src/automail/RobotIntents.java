@@ -0,0 +1,205 @@
+package automail;
+
+import java.util.Arrays;
+
+import exceptions.NoValidRobotsAvailableException;
+import strategies.IMailPool;
+
+/**
+ * Stands in for the mail pool, the delivery report and the event log of one
+ * robot while robots step in parallel. Everything the robot asks of them is
+ * recorded in order and applied later by {@link #commit}, so that robots
+ * can be committed one after another in a fixed order.
+ * The buffer is reused tick after tick and only grows.
+ */
+class RobotIntents implements IMailPool, IMailDelivery, EventSink {
+
+    /** The kinds of recorded call */
+    private static final byte ADD_TO_POOL = 0;
+    private static final byte REGISTER = 1;
+    private static final byte DEREGISTER = 2;
+    private static final byte DELIVER = 3;
+    private static final byte ARRIVED = 4;
+    private static final byte RETURNED = 5;
+    private static final byte STATE = 6;
+    private static final byte ROUTE = 7;
+
+    private static final Robot.RobotState[] STATES = Robot.RobotState.values();
+
+    private byte[] kind = new byte[8];
+    private int[] time = new int[8];
+    private int[] tubeSize = new int[8];
+    private int[] tubeCapacity = new int[8];
+    private byte[] from = new byte[8];
+    private byte[] to = new byte[8];
+    private Object[] subject = new Object[8];
+    private String[] robotId = new String[8];
+    private int count;
+
+    /** The robot whose calls are recorded */
+    private final Robot robot;
+
+    /**
+     * Instantiates a new buffer for a robot.
+     *
+     * @param robot the robot whose calls are recorded
+     */
+    RobotIntents(Robot robot) {
+        this.robot = robot;
+    }
+
+    /**
+     * Claims the next record, growing the buffer if it is full.
+     *
+     * @param recordKind the kind of call
+     * @return the index of the record
+     */
+    private int claim(byte recordKind) {
+        if (count == kind.length) {
+            int capacity = count * 2;
+            kind = Arrays.copyOf(kind, capacity);
+            time = Arrays.copyOf(time, capacity);
+            tubeSize = Arrays.copyOf(tubeSize, capacity);
+            tubeCapacity = Arrays.copyOf(tubeCapacity, capacity);
+            from = Arrays.copyOf(from, capacity);
+            to = Arrays.copyOf(to, capacity);
+            subject = Arrays.copyOf(subject, capacity);
+            robotId = Arrays.copyOf(robotId, capacity);
+        }
+        kind[count] = recordKind;
+        return count++;
+    }
+
+    @Override
+    public void addToPool(MailItem mailItem) {
+        subject[claim(ADD_TO_POOL)] = mailItem;
+    }
+
+    /**
+     * Only the simulation steps the mail pool; a robot never does, so this
+     * is never called on a robot's buffer.
+     */
+    @Override
+    public void step() {
+        throw new IllegalStateException("A robot must never step the mail " +
+                "pool");
+    }
+
+    @Override
+    public void registerWaiting(Robot robot) {
+        subject[claim(REGISTER)] = robot;
+    }
+
+    @Override
+    public void deregisterWaiting(Robot robot) {
+        subject[claim(DEREGISTER)] = robot;
+    }
+
+    @Override
+    public void deliver(MailItem mailItem) {
+        subject[claim(DELIVER)] = mailItem;
+    }
+
+    @Override
+    public void deliver(MailItem mailItem, Robot robot) {
+        deliver(mailItem);
+    }
+
+    @Override
+    public void mailArrived(int time, MailItem mailItem) {
+        int i = claim(ARRIVED);
+        this.time[i] = time;
+        subject[i] = mailItem;
+    }
+
+    @Override
+    public void mailReturned(int time, MailItem mailItem) {
+        int i = claim(RETURNED);
+        this.time[i] = time;
+        subject[i] = mailItem;
+    }
+
+    @Override
+    public void stateChanged(int time, String robotId, int tubeSize,
+                             int tubeCapacity, Robot.RobotState from,
+                             Robot.RobotState to) {
+        int i = claim(STATE);
+        this.time[i] = time;
+        this.robotId[i] = robotId;
+        this.tubeSize[i] = tubeSize;
+        this.tubeCapacity[i] = tubeCapacity;
+        this.from[i] = (byte) from.ordinal();
+        this.to[i] = (byte) to.ordinal();
+    }
+
+    @Override
+    public void routeSet(int time, String robotId, int tubeSize,
+                         int tubeCapacity, MailItem mailItem) {
+        int i = claim(ROUTE);
+        this.time[i] = time;
+        this.robotId[i] = robotId;
+        this.tubeSize[i] = tubeSize;
+        this.tubeCapacity[i] = tubeCapacity;
+        subject[i] = mailItem;
+    }
+
+    /**
+     * Only the delivery report says an item was delivered; a robot never
+     * does, so this is never called on a robot's buffer.
+     */
+    @Override
+    public void delivered(int time, MailItem mailItem) {
+        throw new IllegalStateException("A robot must never report a " +
+                "delivered event itself");
+    }
+
+    /**
+     * Applies the recorded calls, in the order they were made, and empties
+     * the buffer.
+     *
+     * @param mailPool the mail pool
+     * @param delivery the delivery report
+     * @param events   the event log
+     * @throws NoValidRobotsAvailableException if the mail pool refuses an item
+     */
+    void commit(IMailPool mailPool, IMailDelivery delivery, EventSink events)
+            throws NoValidRobotsAvailableException {
+        try {
+            for (int i = 0; i < count; i++) {
+                switch (kind[i]) {
+                    case ADD_TO_POOL:
+                        mailPool.addToPool((MailItem) subject[i]);
+                        break;
+                    case REGISTER:
+                        mailPool.registerWaiting((Robot) subject[i]);
+                        break;
+                    case DEREGISTER:
+                        mailPool.deregisterWaiting((Robot) subject[i]);
+                        break;
+                    case DELIVER:
+                        delivery.deliver((MailItem) subject[i], robot);
+                        break;
+                    case ARRIVED:
+                        events.mailArrived(time[i], (MailItem) subject[i]);
+                        break;
+                    case RETURNED:
+                        events.mailReturned(time[i], (MailItem) subject[i]);
+                        break;
+                    case STATE:
+                        events.stateChanged(time[i], robotId[i], tubeSize[i],
+                                tubeCapacity[i], STATES[from[i]],
+                                STATES[to[i]]);
+                        break;
+                    default:
+                        events.routeSet(time[i], robotId[i], tubeSize[i],
+                                tubeCapacity[i], (MailItem) subject[i]);
+                        break;
+                }
+            }
+        } finally {
+            Arrays.fill(subject, 0, count, null);
+            Arrays.fill(robotId, 0, count, null);
+            count = 0;
+        }
+    }
+}
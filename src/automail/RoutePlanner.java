@@ -0,0 +1,56 @@
+package automail;
+
+/**
+ * Decides the order in which a robot delivers the items loaded into its
+ * tube, just before it leaves the mailroom.
+ */
+public interface RoutePlanner {
+
+    /**
+     * Reorders the tube so that items come off it in delivery order
+     *
+     * @param tube         the loaded tube
+     * @param currentFloor the floor the robot sets off from
+     */
+    void plan(StorageTube tube, int currentFloor);
+
+    /**
+     * Delivers the items in the order the mail pool loaded them, highest
+     * ranked first
+     */
+    RoutePlanner AS_LOADED = (tube, currentFloor) -> { };
+
+    /**
+     * Delivers the items in one sweep, like a lift: first the floors above
+     * the robot going up, then the floors below going down. Leaving from the
+     * mailroom, that is every floor in ascending order, which never travels
+     * further than reaching the top destination and coming back.
+     */
+    RoutePlanner SCAN = (tube, currentFloor) -> tube.sortForDelivery(
+            (a, b) -> {
+                boolean aUp = a.getDestFloor() >= currentFloor;
+                boolean bUp = b.getDestFloor() >= currentFloor;
+                if (aUp != bUp) return aUp ? -1 : 1;
+                return aUp ? Integer.compare(a.getDestFloor(),
+                        b.getDestFloor()) : Integer.compare(b.getDestFloor(),
+                        a.getDestFloor());
+            });
+
+    /**
+     * Finds a planner by the name used in automail.properties
+     *
+     * @param name AsLoaded or Scan
+     * @return the planner
+     */
+    static RoutePlanner named(String name) {
+        switch (name) {
+            case "AsLoaded":
+                return AS_LOADED;
+            case "Scan":
+                return SCAN;
+            default:
+                throw new IllegalArgumentException("Unknown route planner: " +
+                        name);
+        }
+    }
+}
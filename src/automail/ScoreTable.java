@@ -0,0 +1,74 @@
+package automail;
+
+import java.util.Arrays;
+
+/**
+ * Scores deliveries from tables instead of calling Math.pow and Math.sqrt
+ * for each one. The score of a delivery is latency^1.2 * (1 + sqrt(priority))
+ * and both terms only ever see small non-negative integers, so each is
+ * worked out once, with the same Math calls, and looked up after that; the
+ * tables grow as larger latencies and priority levels turn up. Scores are
+ * the same, bit for bit, as calling Math.pow and Math.sqrt directly.
+ * A table is not thread safe; each simulation run keeps its own.
+ */
+public class ScoreTable {
+
+    /** Penalty for longer delivery times */
+    public static final double PENALTY = 1.2;
+
+    /** How many latencies are worked out to begin with */
+    private static final int INITIAL_LATENCIES = 1024;
+    /** How many priority levels are worked out to begin with */
+    private static final int INITIAL_PRIORITIES = 101;
+
+    /** latency^PENALTY, by latency */
+    private double[] latencyTerm = new double[0];
+    /** 1 + sqrt(priority), by priority level */
+    private double[] priorityTerm = new double[0];
+
+    /**
+     * Instantiates a new score table.
+     */
+    public ScoreTable() {
+        growLatencies(INITIAL_LATENCIES);
+        growPriorities(INITIAL_PRIORITIES);
+    }
+
+    /**
+     * Scores a delivery.
+     *
+     * @param latency       the ticks from arrival to delivery
+     * @param priorityLevel the priority level, or 0 for none
+     * @return latency^1.2 * (1 + sqrt(priorityLevel))
+     */
+    public double score(int latency, int priorityLevel) {
+        if (latency < 0 || priorityLevel < 0) {
+            // Not seen in a run, but score it the way it always was
+            return Math.pow(latency, PENALTY) *
+                    (1 + Math.sqrt(priorityLevel));
+        }
+        if (latency >= latencyTerm.length) {
+            growLatencies(Math.max(latency + 1, latencyTerm.length * 2));
+        }
+        if (priorityLevel >= priorityTerm.length) {
+            growPriorities(priorityLevel + 1);
+        }
+        return latencyTerm[latency] * priorityTerm[priorityLevel];
+    }
+
+    private void growLatencies(int length) {
+        int old = latencyTerm.length;
+        latencyTerm = Arrays.copyOf(latencyTerm, length);
+        for (int latency = old; latency < length; latency++) {
+            latencyTerm[latency] = Math.pow(latency, PENALTY);
+        }
+    }
+
+    private void growPriorities(int length) {
+        int old = priorityTerm.length;
+        priorityTerm = Arrays.copyOf(priorityTerm, length);
+        for (int level = old; level < length; level++) {
+            priorityTerm[level] = 1 + Math.sqrt(level);
+        }
+    }
+}
@@ -2,11 +2,16 @@ package automail;
 
 import exceptions.*;
 import strategies.Automail;
+import strategies.HoldPolicy;
+import strategies.IMailPool;
 
 import java.util.stream.Stream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.PrintStream;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Properties;
 import java.util.List;
@@ -18,125 +23,599 @@ import java.util.stream.Collectors;
 public class Simulation {
 
 	public enum RobotType { Big, Careful, Standard, Weak }
-	
-	
+
+
     /** Constant for the mail generator */
-    private static int MAIL_TO_CREATE;
-    
+    private final int MAIL_TO_CREATE;
 
-    private static ArrayList<MailItem> MAIL_DELIVERED;
-    private static double total_score = 0;
+    private final int floors;
+    private final boolean fragile;
+    private final int lastDeliveryTime;
+    private final List<RobotType> robotTypes;
+    private final String mailPoolName;
+    private final boolean eventDriven;
+    private final int mailWindow;
+    private final int mailThreads;
+    private final String mailTrace;
+    private final RoutePlanner routePlanner;
+    private final int robotThreads;
+    private final boolean printMetrics;
+    private final int metricsInterval;
+    private final boolean liveMetrics;
+    private final int liveMetricsPort;
+    private final int dispatchHold;
+    private final HashMap<Boolean, Integer> seedMap;
+    private final PrintStream out;
+    private final EventSink events;
 
-    public static void main(String[] args) throws IOException,
-			InstantiationException, IllegalAccessException,
-			ClassNotFoundException, InvalidRobotTypeException,
-			NoValidRobotsAvailableException {
-    	Properties automailProperties = new Properties();
-		// Default properties
-    	// automailProperties.setProperty("Robots", "Big,Careful,Standard,Weak");
-    	automailProperties.setProperty("Robots", "Standard");
-    	automailProperties.setProperty("MailPool", "strategies.SimpleMailPool");
-    	automailProperties.setProperty("Floors", "10");
-    	automailProperties.setProperty("Fragile", "false");
-    	automailProperties.setProperty("Mail_to_Create", "80");
-    	automailProperties.setProperty("Last_Delivery_Time", "100");
+    /** The number of events the background event log can hold */
+    private static final int EVENT_LOG_CAPACITY = 1 << 16;
 
-    	// Read properties
-		FileReader inStream = null;
-		try {
-			inStream = new FileReader("automail.properties");
-			automailProperties.load(inStream);
-		} finally {
-			 if (inStream != null) {
-	                inStream.close();
-	            }
-		}
+    private SimulationContext context;
+    private Automail automail;
+    private DeliveryLedger MAIL_DELIVERED;
+    private double total_score = 0;
+    private DeliveryMetrics metrics;
+    private final ScoreTable scores = new ScoreTable();
+    private MailGenerator mailGenerator;
+    private ParallelRobotStepper stepper;
+    private LiveMetrics live;
+    private int nextMetrics;
+    /** Whether the run's threads, trace and endpoint have been let go */
+    private boolean closed;
 
-		//Seed
-		String seedProp = automailProperties.getProperty("Seed");
+    /**
+     * Instantiates a new simulation run from the given settings.
+     *
+     * @param automailProperties the settings of the run
+     * @param seed               the seed to use, or null to randomise
+     * @param out                where the settings and results are printed
+     * @param events             where the run reports what happens
+     * @throws IllegalArgumentException if Dispatch_Hold is set with a mail
+     *                                  pool that can not hold robots
+     */
+    public Simulation(Properties automailProperties, Integer seed,
+                      PrintStream out, EventSink events) {
 		// Floors
-		Building.FLOORS = Integer.parseInt
+		floors = Integer.parseInt
 				(automailProperties.getProperty("Floors"));
-        System.out.printf("Floors: %5d%n", Building.FLOORS);
         // Fragile
-        boolean fragile = Boolean.parseBoolean
+        fragile = Boolean.parseBoolean
 				(automailProperties.getProperty("Fragile"));
-        System.out.printf("Fragile: %5b%n", fragile);
 		// Mail_to_Create
 		MAIL_TO_CREATE = Integer.parseInt
 				(automailProperties.getProperty("Mail_to_Create"));
-        System.out.printf("Mail_to_Create: %5d%n", MAIL_TO_CREATE);
 		// Last_Delivery_Time
-		Clock.LAST_DELIVERY_TIME = Integer.parseInt
+		lastDeliveryTime = Integer.parseInt
 				(automailProperties.getProperty("Last_Delivery_Time"));
-        System.out.printf
-				("Last_Delivery_Time: %5d%n", Clock.LAST_DELIVERY_TIME);
 		// Robots
 		String robotsProp = automailProperties.getProperty("Robots");
-		List<RobotType> robotTypes = Stream.of(robotsProp.split(",")).
+		robotTypes = Stream.of(robotsProp.split(",")).
 				map(RobotType::valueOf).collect(Collectors.toList());
-		System.out.print("Robots: "); System.out.println(robotTypes);
+		// MailPool
+		mailPoolName = automailProperties.getProperty("MailPool");
+		// Event_Driven
+		eventDriven = Boolean.parseBoolean
+				(automailProperties.getProperty("Event_Driven"));
+		// Mail_Window
+		mailWindow = Integer.parseInt
+				(automailProperties.getProperty("Mail_Window"));
+		// Mail_Threads
+		mailThreads = Integer.parseInt
+				(automailProperties.getProperty("Mail_Threads"));
+		// Mail_Trace
+		mailTrace = automailProperties.getProperty("Mail_Trace");
+		// Route
+		routePlanner = RoutePlanner.named
+				(automailProperties.getProperty("Route"));
+		// Robot_Threads
+		robotThreads = Integer.parseInt
+				(automailProperties.getProperty("Robot_Threads"));
+		// Metrics
+		printMetrics = Boolean.parseBoolean
+				(automailProperties.getProperty("Metrics"));
+		// Metrics_Interval
+		metricsInterval = Integer.parseInt
+				(automailProperties.getProperty("Metrics_Interval"));
+		// Live_Metrics
+		liveMetrics = Boolean.parseBoolean
+				(automailProperties.getProperty("Live_Metrics"));
+		// Live_Metrics_Port
+		liveMetricsPort = Integer.parseInt
+				(automailProperties.getProperty("Live_Metrics_Port"));
+		// Dispatch_Hold
+		dispatchHold = Integer.parseInt
+				(automailProperties.getProperty("Dispatch_Hold"));
+		if (dispatchHold > 0 && !canHold(mailPoolName)) {
+			throw new IllegalArgumentException("Dispatch_Hold needs a mail " +
+					"pool that can hold robots, and " + mailPoolName +
+					" can not");
+		}
 
-		// End properties
-		
-        MAIL_DELIVERED = new ArrayList<MailItem>();
-                
         /** Used to see whether a seed is initialized or not */
-        HashMap<Boolean, Integer> seedMap = new HashMap<>();
-        
+        seedMap = new HashMap<>();
+        if (seed == null) {
+        	seedMap.put(false, 0); // so randomise
+        } else {
+        	seedMap.put(true, seed);
+        }
+        this.out = out;
+        this.events = events;
+    }
+
+    public static void main(String[] args) throws IOException,
+			ClassNotFoundException, InvalidRobotTypeException,
+			NoValidRobotsAvailableException {
+    	Properties automailProperties = loadProperties();
+
+		//Seed
+		String seedProp = automailProperties.getProperty("Seed");
         /** Read the first argument and save it as a seed if it exists */
+        Integer seed;
         if (args.length == 0 ) { // No arg
         	if (seedProp == null) { // and no property
-        		seedMap.put(false, 0); // so randomise
+        		seed = null; // so randomise
         	} else { // Use property seed
-        		seedMap.put(true, Integer.parseInt(seedProp));
+        		seed = Integer.parseInt(seedProp);
         	}
         } else { // Use arg seed - overrides property
-        	seedMap.put(true, Integer.parseInt(args[0]));
+        	seed = Integer.parseInt(args[0]);
         }
-        Integer seed = seedMap.get(true);
-        System.out.printf
-				("Seed: %s%n", seed == null ? "null" : seed.toString());
 
-		// MailPool
-		String mailPoolName = automailProperties.getProperty("MailPool");
-        Automail automail = new Automail(new ReportDelivery(), mailPoolName,
-				robotTypes);
+        // Event_Log
+        String eventLog = automailProperties.getProperty("Event_Log");
+        EventSink events;
+        if (eventLog == null || eventLog.isEmpty()) {
+        	events = new TextEventSink(System.out);
+		} else if (eventLog.equals("none")) {
+        	events = EventSink.NONE;
+		} else {
+        	events = new AsyncEventSink(Paths.get(eventLog),
+					EVENT_LOG_CAPACITY);
+		}
+
+        Simulation simulation = new Simulation(automailProperties, seed,
+				System.out, events);
+        simulation.printSettings();
+        try {
+        	simulation.run();
+		} catch (ExcessiveDeliveryException | ItemTooHeavyException |
+				FragileItemBrokenException e) {
+        	events.close();
+			e.printStackTrace();
+			System.out.println("Simulation unable to complete.");
+			System.exit(0);
+		}
+        events.close();
+        simulation.printResults();
+        if (simulation.dispatchHold > 0 && seed != null) {
+        	// The same day without holding robots, to compare with
+        	Properties unheld = new Properties();
+        	unheld.putAll(automailProperties);
+        	unheld.setProperty("Dispatch_Hold", "0");
+        	BatchSimulation.Result result = BatchSimulation.runOne(unheld,
+					seed);
+        	if (result.completed()) {
+        		System.out.printf("Without hold: Final Score: %.2f | " +
+						"Items per trip: %.2f%n", result.score,
+						result.itemsPerTrip());
+        		System.out.printf("Score difference: %+.2f%n",
+						simulation.getTotalScore() - result.score);
+			} else {
+        		System.out.println("Without hold: Simulation unable to " +
+						"complete.");
+			}
+		}
+    }
+
+    /**
+     * Reads the settings from automail.properties, on top of the defaults.
+     *
+     * @return the settings
+     * @throws IOException if the file can not be read
+     */
+    public static Properties loadProperties() throws IOException {
+    	Properties automailProperties = defaultProperties();
 
-        MailGenerator mailGenerator = new MailGenerator
-				(MAIL_TO_CREATE, automail.MAIL_POOL, seedMap, fragile);
+    	// Read properties
+		FileReader inStream = null;
+		try {
+			inStream = new FileReader("automail.properties");
+			automailProperties.load(inStream);
+		} finally {
+			 if (inStream != null) {
+	                inStream.close();
+	            }
+		}
+		return automailProperties;
+    }
+
+    /**
+     * Gets the default settings, used where automail.properties leaves a
+     * setting out.
+     *
+     * @return the settings
+     */
+    public static Properties defaultProperties() {
+    	Properties automailProperties = new Properties();
+		// Default properties
+    	// automailProperties.setProperty("Robots", "Big,Careful,Standard,Weak");
+    	automailProperties.setProperty("Robots", "Standard");
+    	automailProperties.setProperty("MailPool", "MyMailPool");
+    	automailProperties.setProperty("Floors", "10");
+    	automailProperties.setProperty("Fragile", "false");
+    	automailProperties.setProperty("Mail_to_Create", "80");
+    	automailProperties.setProperty("Last_Delivery_Time", "100");
+    	automailProperties.setProperty("Event_Driven", "false");
+    	automailProperties.setProperty("Event_Log", "");
+    	automailProperties.setProperty("Mail_Window", "0");
+    	automailProperties.setProperty("Mail_Threads", "0");
+    	automailProperties.setProperty("Mail_Trace", "");
+    	automailProperties.setProperty("Route", "AsLoaded");
+    	automailProperties.setProperty("Robot_Threads", "1");
+    	automailProperties.setProperty("Metrics", "false");
+    	automailProperties.setProperty("Metrics_Interval", "0");
+    	automailProperties.setProperty("Live_Metrics", "false");
+    	automailProperties.setProperty("Live_Metrics_Port", "0");
+    	automailProperties.setProperty("Dispatch_Hold", "0");
+		return automailProperties;
+    }
+
+    /**
+     * Prints the settings of the run.
+     */
+    public void printSettings() {
+        out.printf("Floors: %5d%n", floors);
+        out.printf("Fragile: %5b%n", fragile);
+        out.printf("Mail_to_Create: %5d%n", MAIL_TO_CREATE);
+        out.printf("Last_Delivery_Time: %5d%n", lastDeliveryTime);
+		out.print("Robots: "); out.println(robotTypes);
+		Integer seed = seedMap.get(true);
+        out.printf("Seed: %s%n", seed == null ? "null" : seed.toString());
+    }
+
+    /**
+     * Runs the simulation until all mail has been delivered.
+     *
+     * @return the final score
+     */
+    public double run() throws IOException, ClassNotFoundException,
+			InvalidRobotTypeException,
+			NoValidRobotsAvailableException, ExcessiveDeliveryException,
+			ItemTooHeavyException, FragileItemBrokenException {
+        start();
+        runUntil(Integer.MAX_VALUE);
+        return total_score;
+    }
+
+    /**
+     * Sets up the building, the fleet and the mail, with the clock at 0.
+     * If setting up fails, whatever was already set up is closed again.
+     */
+    public void start() throws IOException, ClassNotFoundException,
+			InvalidRobotTypeException {
+        boolean started = false;
+        try {
+        	setUp();
+        	started = true;
+		} finally {
+        	if (!started) close();
+		}
+    }
+
+    private void setUp() throws IOException, ClassNotFoundException,
+			InvalidRobotTypeException {
+        closed = false;
+        // Live counts see the events on their way to the run's sink
+        live = liveMetrics ? new LiveMetrics(events) : null;
+        EventSink runEvents = live == null ? events : live;
+        context = new SimulationContext(new Building(floors),
+				new Clock(lastDeliveryTime), runEvents, routePlanner);
+        MAIL_DELIVERED = new DeliveryLedger();
+        total_score = 0;
+        metrics = new DeliveryMetrics(floors, robotTypes);
+        nextMetrics = metricsInterval;
+
+        ReportDelivery delivery = new ReportDelivery();
+        IMailPool mailPool = Automail.makeMailPool(mailPoolName);
+        if (live != null) mailPool = new MonitoredMailPool(mailPool, live);
+        automail = new Automail(delivery, mailPool, robotTypes, context);
+        if (live != null) {
+        	live.recount(0, 0, 0, automail.ROBOTS, List.of(), 0);
+        	live.publish(liveMetricsPort);
+		}
+
+        if (!mailTrace.isEmpty()) {
+        	mailGenerator = new TraceMailGenerator(MailTrace.open(
+        			Paths.get(mailTrace)), automail.MAIL_POOL, context);
+		} else if (mailThreads > 0) {
+        	mailGenerator = new ParallelMailGenerator(MAIL_TO_CREATE,
+					automail.MAIL_POOL, seedMap, fragile, mailThreads, context);
+		} else if (mailWindow > 0) {
+        	mailGenerator = new StreamingMailGenerator(MAIL_TO_CREATE,
+					automail.MAIL_POOL, seedMap, fragile, mailWindow, context);
+		} else {
+        	mailGenerator = new MailGenerator(MAIL_TO_CREATE,
+					automail.MAIL_POOL, seedMap, fragile, context);
+		}
+
+        if (dispatchHold > 0) {
+        	automail.MAIL_POOL.setDispatchPolicy(new HoldPolicy(dispatchHold,
+					mailGenerator, context.CLOCK, floors));
+		}
+
+        stepper = robotThreads > 1 ?
+				new ParallelRobotStepper(automail.ROBOTS, automail.MAIL_POOL,
+						delivery, runEvents, robotThreads) : null;
 
         /** Initiate all the mail */
         mailGenerator.generateAllMail();
-        // PriorityMailItem priority;  // Not used in this version
-        while(MAIL_DELIVERED.size() != mailGenerator.MAIL_TO_CREATE) {
-        	//System.out.println("-- Step: "+Clock.Time());
-            /* priority = */ mailGenerator.step();
-            try {
+    }
+
+    /**
+     * Steps the simulation until all mail has been delivered or the clock
+     * reaches the given time. Skipping idle ticks may take the clock past
+     * it. The run is closed once complete or if a step fails, but left open
+     * when stopped at the time.
+     *
+     * @param time the time to stop at
+     * @return whether all mail has been delivered
+     */
+    public boolean runUntil(int time) throws NoValidRobotsAvailableException,
+			ExcessiveDeliveryException, ItemTooHeavyException,
+			FragileItemBrokenException {
+        // Stop the stepper threads once done, or if the run fails
+        boolean finished = true;
+        try {
+            // PriorityMailItem priority;  // Not used in this version
+            while(!isComplete() && context.CLOCK.Time() < time) {
+            	//System.out.println("-- Step: "+Clock.Time());
+            	int stepTime = context.CLOCK.Time();
+                /* priority = */ mailGenerator.step();
                 automail.MAIL_POOL.step();
-				for (int i=0; i<robotTypes.size(); i++) automail.ROBOTS[i].step();
-			} catch (ExcessiveDeliveryException | ItemTooHeavyException |
-					FragileItemBrokenException |
-					NoValidRobotsAvailableException e) {
-				e.printStackTrace();
-				System.out.println("Simulation unable to complete.");
-				System.exit(0);
-			}
-            Clock.Tick();
+				if (stepper != null) {
+					stepper.step();
+				} else {
+					for (int i=0; i<robotTypes.size(); i++) automail.ROBOTS[i].step();
+				}
+                context.CLOCK.Tick();
+                if (eventDriven && !isComplete()) {
+                	skipIdleTicks(mailGenerator);
+				}
+                if (live != null) live.ticked(context.CLOCK.Time() - stepTime);
+                if (metricsInterval > 0 &&
+						context.CLOCK.Time() >= nextMetrics) {
+                	metrics.print(out, context.CLOCK.Time());
+                	nextMetrics = (context.CLOCK.Time() / metricsInterval + 1)
+							* metricsInterval;
+				}
+            }
+            finished = isComplete();
+            return finished;
+        } finally {
+        	if (finished) close();
         }
-        printResults();
     }
 
-    static class ReportDelivery implements IMailDelivery {
+    /**
+     * Lets go of what the run holds besides memory: the robot stepper's
+     * threads, the mail trace and the live metrics endpoint. runUntil does
+     * this once the run is complete or fails; a run stopped part way must
+     * be closed by whoever stopped it. Closing again does nothing.
+     */
+    public void close() {
+        if (closed) return;
+        closed = true;
+        if (stepper != null) stepper.shutdown();
+        if (mailGenerator != null) mailGenerator.close();
+        if (live != null) live.unpublish();
+    }
+
+    /**
+     * Tells whether all mail has been delivered.
+     *
+     * @return whether the run is complete
+     */
+    public boolean isComplete() {
+        return MAIL_DELIVERED.size() == mailGenerator.MAIL_TO_CREATE;
+    }
+
+    /**
+     * Tells whether a mail pool strategy can hold robots for a dispatch
+     * policy.
+     *
+     * @param mailPoolName the name of the strategy
+     * @return whether its pools can hold robots
+     * @throws IllegalArgumentException if there is no such strategy
+     */
+    private static boolean canHold(String mailPoolName) {
+    	try {
+    		return Automail.makeMailPool(mailPoolName).canHold();
+		} catch (ClassNotFoundException e) {
+    		throw new IllegalArgumentException("Bad settings: " + e, e);
+		}
+	}
+
+    /**
+     * Writes the settings the mail depends on, then where the run is, to a
+     * snapshot. Only a seeded run can be snapshot, as its mail is made again
+     * from the seed on restoring, and only with a mail pool that can list
+     * what is waiting in it.
+     *
+     * @param out the snapshot
+     * @throws IOException if the snapshot can not be written
+     * @throws IllegalStateException if the run is not seeded, or its mail
+     *                               pool can not be snapshot
+     */
+    void writeState(DataOutputStream out) throws IOException {
+        Integer seed = seedMap.get(true);
+        if (seed == null) {
+        	throw new IllegalStateException("Only a seeded run can be " +
+					"snapshot");
+		}
+        if (!automail.MAIL_POOL.canSnapshot()) {
+        	throw new IllegalStateException("The mail pool " + mailPoolName +
+					" can not be snapshot");
+		}
+        out.writeInt(seed);
+        out.writeInt(MAIL_TO_CREATE);
+        out.writeInt(floors);
+        out.writeBoolean(fragile);
+        out.writeInt(lastDeliveryTime);
+
+        out.writeInt(context.CLOCK.Time());
+        out.writeDouble(total_score);
+        MAIL_DELIVERED.writeState(out);
+        List<MailItem> waiting = automail.MAIL_POOL.getWaitingItems();
+        out.writeInt(waiting.size());
+        for (MailItem mailItem : waiting) {
+        	SimulationSnapshot.writeItem(out, mailItem);
+		}
+        List<Robot> waitingRobots = automail.MAIL_POOL.getWaitingRobots();
+        out.writeInt(waitingRobots.size());
+        for (Robot robot : waitingRobots) out.writeInt(robot.hashCode());
+        out.writeInt(robotTypes.size());
+        for (int i = 0; i < robotTypes.size(); i++) {
+        	out.writeByte(robotTypes.get(i).ordinal());
+        	((Robot) automail.ROBOTS[i]).writeState(out);
+		}
+    }
+
+    /**
+     * Makes a run from a snapshot written by {@link #writeState}. The mail
+     * settings and seed come from the snapshot, everything else from the
+     * given settings, so the run can go on with another mail pool, route
+     * planner or a larger fleet. The fleet must start with the robots of
+     * the snapshot; any robots after them start at the mailroom.
+     * The delivery latencies recorded before the snapshot are not kept.
+     *
+     * @param in                 the snapshot
+     * @param automailProperties the settings to go on with
+     * @param out                where the results are printed
+     * @param events             where the run reports what happens
+     * @return the run, ready to go on from the time of the snapshot
+     * @throws IOException if the snapshot can not be read
+     */
+    static Simulation readState(DataInputStream in,
+								Properties automailProperties, PrintStream out,
+								EventSink events) throws IOException,
+			ClassNotFoundException, InvalidRobotTypeException,
+			NoValidRobotsAvailableException {
+        Integer seed = in.readInt();
+        Properties settings = new Properties();
+        settings.putAll(automailProperties);
+        settings.setProperty("Mail_to_Create", String.valueOf(in.readInt()));
+        settings.setProperty("Floors", String.valueOf(in.readInt()));
+        settings.setProperty("Fragile", String.valueOf(in.readBoolean()));
+        settings.setProperty("Last_Delivery_Time",
+				String.valueOf(in.readInt()));
+        Simulation simulation = new Simulation(settings, seed, out, events);
+        simulation.start();
+        boolean restored = false;
+        try {
+        	simulation.readRunState(in);
+        	restored = true;
+		} finally {
+        	if (!restored) simulation.close();
+		}
+        return simulation;
+    }
+
+    private void readRunState(DataInputStream in) throws IOException,
+			NoValidRobotsAvailableException {
+        int time = in.readInt();
+        context.CLOCK.advance(time - context.CLOCK.Time());
+        if (metricsInterval > 0) {
+        	nextMetrics = (time / metricsInterval + 1) * metricsInterval;
+		}
+        total_score = in.readDouble();
+        MAIL_DELIVERED.readState(in);
+        MailItem[] waiting = new MailItem[in.readInt()];
+        for (int i = 0; i < waiting.length; i++) {
+        	waiting[i] = SimulationSnapshot.readItem(in);
+		}
+        int[] waitingRobots = new int[in.readInt()];
+        for (int i = 0; i < waitingRobots.length; i++) {
+        	waitingRobots[i] = in.readInt();
+		}
+        int robots = in.readInt();
+        if (robots > robotTypes.size()) {
+        	throw new IllegalArgumentException("The fleet must start with " +
+					"the robots of the snapshot");
+		}
+        for (int i = 0; i < robots; i++) {
+        	if (RobotType.values()[in.readByte()] != robotTypes.get(i)) {
+        		throw new IllegalArgumentException("The fleet must start " +
+						"with the robots of the snapshot");
+			}
+        	((Robot) automail.ROBOTS[i]).readState(in);
+		}
+
+        /**
+         * Robots waiting are registered again in the order they were offered
+         * items; once past tick 0 every robot has registered at least once,
+         * which is how the pool learns which kinds of robot there are.
+         */
+        IMailPool mailPool = automail.MAIL_POOL;
+        for (int number : waitingRobots) {
+        	mailPool.registerWaiting((Robot) automail.ROBOTS[number]);
+		}
+        if (time > 0) {
+        	for (int i = 0; i < robots; i++) {
+        		Robot robot = (Robot) automail.ROBOTS[i];
+        		if (robot.currentState == Robot.RobotState.WAITING) continue;
+        		mailPool.registerWaiting(robot);
+        		mailPool.deregisterWaiting(robot);
+			}
+		}
+        for (MailItem mailItem : waiting) mailPool.addToPool(mailItem);
+        if (live != null) {
+        	live.recount(time, total_score, MAIL_DELIVERED.size(),
+					automail.ROBOTS, mailPool.getWaitingItems(),
+					waitingRobots.length);
+		}
+    }
+
+    /**
+     * Jumps the clock to the next tick at which something other than robots
+     * moving between floors happens: mail arriving, a robot reaching the
+     * floor it is heading for, or the mail pool loading a waiting robot.
+     * The skipped moves are made at once, so the run ends exactly as it would
+     * stepping every tick.
+     *
+     * @param mailGenerator the source of mail
+     */
+    private void skipIdleTicks(MailGenerator mailGenerator) {
+    	if (!automail.MAIL_POOL.isIdle()) return;
+    	int ticks = mailGenerator.ticksUntilNextArrival();
+    	for (DelivererBehaviour robot : automail.ROBOTS) {
+    		ticks = Math.min(ticks, robot.idleSteps());
+		}
+    	// Nothing will ever happen again; keep ticking as the tick loop does
+    	if (ticks <= 0 || ticks == Integer.MAX_VALUE) return;
+    	for (DelivererBehaviour robot : automail.ROBOTS) {
+    		robot.skipSteps(ticks);
+		}
+    	context.CLOCK.advance(ticks);
+    }
+
+    class ReportDelivery implements IMailDelivery {
 
     	/** Confirm the delivery and calculate the total score */
     	public void deliver(MailItem deliveryItem){
-    		if(!MAIL_DELIVERED.contains(deliveryItem)){
-                System.out.printf("T: %3d > Delivered [%s]%n",
-						Clock.Time(), deliveryItem.toString());
-    			MAIL_DELIVERED.add(deliveryItem);
+    		deliver(deliveryItem, null);
+    	}
+
+    	/** Confirm the delivery, calculate the total score and record it */
+    	public void deliver(MailItem deliveryItem, Robot robot){
+    		if(MAIL_DELIVERED.add(deliveryItem)){
+                events.delivered(context.CLOCK.Time(), deliveryItem);
     			// Calculate delivery score
-    			total_score += calculateDeliveryScore(deliveryItem);
+    			double score = calculateDeliveryScore(deliveryItem);
+    			total_score += score;
+    			if (live != null) live.delivered(score);
+                metrics.record(deliveryItem, robot,
+						context.CLOCK.Time() - deliveryItem.getArrivalTime());
     		}
     		else{
     			try {
@@ -148,23 +627,116 @@ public class Simulation {
     	}
 
     }
-    
-    private static double calculateDeliveryScore(MailItem deliveryItem) {
-    	// Penalty for longer delivery times
-    	final double penalty = 1.2;
-    	double priorityWeight = 0;
+
+    private double calculateDeliveryScore(MailItem deliveryItem) {
+    	int priorityWeight = 0;
         // Take (delivery time - arrivalTime)**penalty * (1+sqrt(priorityWeight))
     	if(deliveryItem instanceof PriorityMailItem){
     		priorityWeight = ((PriorityMailItem) deliveryItem).
 					getPriorityLevel();
     	}
-        return Math.pow(Clock.Time() - deliveryItem.getArrivalTime(),penalty)*
-				(1+Math.sqrt(priorityWeight));
+        return scores.score(context.CLOCK.Time() -
+				deliveryItem.getArrivalTime(), priorityWeight);
+    }
+
+    /**
+     * Gets the score so far.
+     *
+     * @return the total score
+     */
+    public double getTotalScore() {
+        return total_score;
+    }
+
+    /**
+     * Gets the delivery latencies so far.
+     *
+     * @return the delivery metrics
+     */
+    public DeliveryMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets the seed of the run.
+     *
+     * @return the seed, or null if the run is randomised
+     */
+    public Integer getSeed() {
+        return seedMap.get(true);
+    }
+
+    /**
+     * Gets the number of items delivered so far.
+     *
+     * @return the number of items delivered
+     */
+    public int getDelivered() {
+        return MAIL_DELIVERED.size();
+    }
+
+    /**
+     * Gets the number of trips the robots have set off on.
+     *
+     * @return the number of trips
+     */
+    public int getTrips() {
+        int trips = 0;
+        for (DelivererBehaviour robot : automail.ROBOTS) {
+            trips += ((Robot) robot).getTrips();
+        }
+        return trips;
+    }
+
+    /**
+     * Gets the mean number of items delivered per trip.
+     *
+     * @return the items per trip
+     */
+    public double getItemsPerTrip() {
+        int trips = getTrips();
+        return trips > 0 ? (double) getDelivered() / trips : 0;
     }
 
-    public static void printResults(){
-        System.out.println("T: "+Clock.Time()+" | Simulation complete!");
-        System.out.println("Final Delivery time: "+Clock.Time());
-        System.out.printf("Final Score: %.2f%n", total_score);
+    /**
+     * Gets the number of floors the robots have moved.
+     *
+     * @return the number of floors
+     */
+    public long getFloorsTravelled() {
+        long floorsTravelled = 0;
+        for (DelivererBehaviour robot : automail.ROBOTS) {
+            floorsTravelled += ((Robot) robot).getFloorsTravelled();
+        }
+        return floorsTravelled;
+    }
+
+    /**
+     * Gets the time of the run, which is the final delivery time once the
+     * run is complete.
+     *
+     * @return the time
+     */
+    public int getTime() {
+        return context.CLOCK.Time();
+    }
+
+    /**
+     * Gets the robots making up the fleet.
+     *
+     * @return the robot types
+     */
+    public List<RobotType> getRobotTypes() {
+        return robotTypes;
+    }
+
+    public void printResults(){
+        out.println("T: "+getTime()+" | Simulation complete!");
+        out.println("Final Delivery time: "+getTime());
+        out.printf("Final Score: %.2f%n", total_score);
+        if (dispatchHold > 0) {
+        	out.printf("Items per trip: %.2f%n", getItemsPerTrip());
+		}
+        if (printMetrics) metrics.print(out, getTime());
     }
 }
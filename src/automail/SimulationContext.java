@@ -0,0 +1,68 @@
+package automail;
+
+/**
+ * The state shared by everything taking part in one simulation run.
+ * Several runs can go on at once in the same JVM, each with its own context.
+ */
+public class SimulationContext {
+
+    /**
+     * The building being served
+     */
+    public final Building BUILDING;
+
+    /**
+     * The clock of the run
+     */
+    public final Clock CLOCK;
+
+    /**
+     * Where the run reports what happens
+     */
+    public final EventSink EVENTS;
+
+    /**
+     * Numbers the mail items of the run
+     */
+    public final IdAllocator MAIL_IDS;
+
+    /**
+     * Numbers the robots of the run
+     */
+    public final IdAllocator ROBOT_IDS;
+
+    /**
+     * Orders each load before a robot leaves
+     */
+    public final RoutePlanner ROUTE_PLANNER;
+
+    /**
+     * Instantiates a new context.
+     *
+     * @param building the building being served
+     * @param clock    the clock of the run
+     * @param events   where the run reports what happens
+     */
+    public SimulationContext(Building building, Clock clock,
+                             EventSink events) {
+        this(building, clock, events, RoutePlanner.AS_LOADED);
+    }
+
+    /**
+     * Instantiates a new context.
+     *
+     * @param building     the building being served
+     * @param clock        the clock of the run
+     * @param events       where the run reports what happens
+     * @param routePlanner orders each load before a robot leaves
+     */
+    public SimulationContext(Building building, Clock clock,
+                             EventSink events, RoutePlanner routePlanner) {
+        this.ROUTE_PLANNER = routePlanner;
+        this.BUILDING = building;
+        this.CLOCK = clock;
+        this.EVENTS = events;
+        this.MAIL_IDS = new IdAllocator();
+        this.ROBOT_IDS = new IdAllocator();
+    }
+}
@@ -0,0 +1,256 @@
+package automail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import exceptions.ExcessiveDeliveryException;
+import exceptions.FragileItemBrokenException;
+import exceptions.InvalidRobotTypeException;
+import exceptions.ItemTooHeavyException;
+import exceptions.NoValidRobotsAvailableException;
+
+/**
+ * Snapshots a seeded run part way through, and forks runs from a snapshot,
+ * so that what-if changes to the fleet, mail pool or route planner made
+ * mid-day do not have to replay the day up to that point.
+ *
+ * A snapshot is a small binary record of the clock, the delivered items and
+ * score, the waiting items, the waiting robots in order, and each robot's
+ * state, floor, destination and tube. The mail still to arrive is not
+ * stored: it is made again from the seed in the snapshot.
+ *
+ * Usage: SimulationSnapshot time [fleet ...]
+ * Runs the Seed property's run to the given time, snapshots it, and then
+ * finishes it once as it is and once per fleet given, in parallel. Each
+ * fleet, e.g. Big,Careful,Standard,Weak,Big, must start with the fleet of
+ * automail.properties.
+ */
+public final class SimulationSnapshot {
+
+    /** Marks the start of a snapshot, "MBOT" */
+    private static final int MAGIC = 0x4d424f54;
+    private static final int VERSION = 3;
+
+    private SimulationSnapshot() {
+    }
+
+    public static void main(String[] args) throws IOException,
+            ClassNotFoundException, InvalidRobotTypeException,
+            NoValidRobotsAvailableException, ExcessiveDeliveryException,
+            ItemTooHeavyException, FragileItemBrokenException,
+            InterruptedException, ExecutionException {
+        if (args.length == 0) {
+            System.out.println("Usage: SimulationSnapshot time [fleet ...]");
+            return;
+        }
+        Properties automailProperties = Simulation.loadProperties();
+        String seedProp = automailProperties.getProperty("Seed");
+        if (seedProp == null) {
+            System.out.println("A snapshot needs the Seed property set.");
+            return;
+        }
+        int time = Integer.parseInt(args[0]);
+
+        Simulation simulation = new Simulation(automailProperties,
+                Integer.parseInt(seedProp), BatchSimulation.SILENT,
+                EventSink.NONE);
+        byte[] snapshot;
+        try {
+            simulation.start();
+            simulation.runUntil(time);
+            snapshot = take(simulation);
+        } finally {
+            // The run stopped part way, so let go of it before forking
+            simulation.close();
+        }
+        System.out.printf("Snapshot at T: %d | %d bytes%n",
+                simulation.getTime(), snapshot.length);
+
+        List<Properties> variants = new ArrayList<>();
+        variants.add(automailProperties);
+        for (int i = 1; i < args.length; i++) {
+            Properties variant = new Properties();
+            variant.putAll(automailProperties);
+            variant.setProperty("Robots", args[i]);
+            variants.add(variant);
+        }
+        List<BatchSimulation.Result> results = fork(snapshot, variants,
+                Runtime.getRuntime().availableProcessors());
+        for (int i = 0; i < results.size(); i++) {
+            BatchSimulation.Result result = results.get(i);
+            String fleet = variants.get(i).getProperty("Robots");
+            if (result.completed()) {
+                System.out.printf("Robots: %s | Final Delivery time: %d | " +
+                        "Final Score: %.2f%n", fleet, result.finalTime,
+                        result.score);
+            } else {
+                System.out.printf("Robots: %s | Simulation unable to " +
+                        "complete.%n", fleet);
+            }
+        }
+    }
+
+    /**
+     * Snapshots a seeded run between two ticks.
+     *
+     * @param simulation the run, started
+     * @return the snapshot
+     * @throws IOException if the snapshot can not be written
+     */
+    public static byte[] take(Simulation simulation) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            simulation.writeState(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Makes a run from a snapshot, ready to go on from where the snapshot
+     * was taken. The seed and mail settings come from the snapshot and the
+     * rest from the given settings.
+     *
+     * @param snapshot           the snapshot
+     * @param automailProperties the settings to go on with
+     * @param out                where the results are printed
+     * @param events             where the run reports what happens
+     * @return the run
+     */
+    public static Simulation restore(byte[] snapshot,
+                                     Properties automailProperties,
+                                     PrintStream out, EventSink events)
+            throws IOException, ClassNotFoundException,
+            InvalidRobotTypeException, NoValidRobotsAvailableException {
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(snapshot))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a simulation snapshot");
+            }
+            return Simulation.readState(in, automailProperties, out, events);
+        }
+    }
+
+    /**
+     * Finishes a run from a snapshot once per set of settings, in parallel
+     * and without reporting their progress.
+     *
+     * @param snapshot the snapshot
+     * @param variants the settings of each run
+     * @param threads  how many runs may go on at once
+     * @return the results, in the order of the settings
+     */
+    public static List<BatchSimulation.Result> fork(byte[] snapshot,
+                                                    List<Properties> variants,
+                                                    int threads)
+            throws InterruptedException, ExecutionException {
+        List<Callable<BatchSimulation.Result>> tasks =
+                new ArrayList<>(variants.size());
+        for (Properties variant : variants) {
+            Properties runProperties = BatchSimulation.concurrentRun(variant);
+            tasks.add(() -> finish(snapshot, runProperties));
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<BatchSimulation.Result> results =
+                    new ArrayList<>(variants.size());
+            for (Future<BatchSimulation.Result> future :
+                    pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Finishes a run from a snapshot. A run which fails as the simulation
+     * reports failing is a result that did not complete; anything else,
+     * such as a fleet that does not fit the snapshot, is thrown on.
+     *
+     * @param snapshot the snapshot
+     * @param variant  the settings to go on with
+     * @return the result of the run
+     * @throws UncheckedIOException     if the snapshot can not be read
+     * @throws IllegalArgumentException if the settings do not fit the
+     *                                  snapshot, or name an unknown mail
+     *                                  pool or robot type
+     */
+    private static BatchSimulation.Result finish(byte[] snapshot,
+                                                 Properties variant) {
+        try {
+            Simulation simulation = restore(snapshot, variant,
+                    BatchSimulation.SILENT, EventSink.NONE);
+            simulation.runUntil(Integer.MAX_VALUE);
+            return new BatchSimulation.Result(simulation.getSeed(),
+                    simulation.getTotalScore(), simulation.getTime(),
+                    simulation.getDelivered(), simulation.getTrips(),
+                    simulation.getFloorsTravelled());
+        } catch (ExcessiveDeliveryException | ItemTooHeavyException |
+                FragileItemBrokenException | NoValidRobotsAvailableException e) {
+            return new BatchSimulation.Result(-1, Double.NaN, -1, 0, 0, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ClassNotFoundException | InvalidRobotTypeException e) {
+            throw new IllegalArgumentException("Bad settings: " + e, e);
+        }
+    }
+
+    /**
+     * Writes a mail item, or null, to a snapshot.
+     *
+     * @param out      the snapshot
+     * @param mailItem the mail item, or null
+     * @throws IOException if the snapshot can not be written
+     */
+    static void writeItem(DataOutputStream out, MailItem mailItem)
+            throws IOException {
+        if (mailItem == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(mailItem.hashCode());
+        out.writeInt(mailItem.getArrivalTime());
+        out.writeInt(mailItem.getDestFloor());
+        out.writeInt(mailItem.getWeight());
+        out.writeBoolean(mailItem.getFragile());
+        out.writeInt(mailItem instanceof PriorityMailItem ?
+                ((PriorityMailItem) mailItem).getPriorityLevel() : 0);
+    }
+
+    /**
+     * Reads a mail item written by {@link #writeItem}.
+     *
+     * @param in the snapshot
+     * @return the mail item, or null
+     * @throws IOException if the snapshot can not be read
+     */
+    static MailItem readItem(DataInputStream in) throws IOException {
+        int number = in.readInt();
+        if (number < 0) return null;
+        int arrival = in.readInt();
+        int destination = in.readInt();
+        int weight = in.readInt();
+        boolean fragile = in.readBoolean();
+        int priority = in.readInt();
+        if (priority > 0) {
+            return new PriorityMailItem(number, destination, arrival, weight,
+                    fragile, priority);
+        }
+        return new MailItem(number, destination, arrival, weight, fragile);
+    }
+}
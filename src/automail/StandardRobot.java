@@ -17,9 +17,11 @@ public class StandardRobot extends Robot{
      *
      * @param delivery governs the final delivery
      * @param mailPool is the source of mail items
+     * @param context  is the simulation run the robot belongs to
      */
-    public StandardRobot(IMailDelivery delivery, IMailPool mailPool) {
+    public StandardRobot(IMailDelivery delivery, IMailPool mailPool,
+                         SimulationContext context) {
         // standard Robot can handle any weight
-        super(delivery, mailPool, Automail.STRONG);
+        super(delivery, mailPool, Automail.STRONG, context);
     }
 }
@@ -6,10 +6,14 @@ package automail;
 
 import exceptions.TubeFullException;
 
-import java.util.Stack;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EmptyStackException;
 
 /**
  * The storage tube carried by the robots.
+ * The items are kept in a small array, the top of the tube being its last
+ * item, with running counts of the fragile and heavy items on board.
  */
 public class StorageTube {
 
@@ -18,13 +22,15 @@ public class StorageTube {
      */
     private int maximumTubeSize = 4;
     private int fragileCount = 0;
-    private Stack<MailItem> tube;
+    private int heavyCount = 0;
+    private MailItem[] tube;
+    private int size = 0;
 
     /**
      * Constructor for the storage tube
      */
     public StorageTube(){
-        this.tube = new Stack<MailItem>();
+        this.tube = new MailItem[maximumTubeSize];
     }
 
     /**
@@ -32,28 +38,29 @@ public class StorageTube {
      * @param capacity the desired number of capacity
      */
     public StorageTube(int capacity){
-        this.tube = new Stack<>();
+        this.tube = new MailItem[capacity];
         maximumTubeSize = capacity;
     }
     /**
      * @return if the storage tube is full
      */
     public boolean isFull(){
-        return tube.size() == maximumTubeSize;
+        return size == maximumTubeSize;
     }
 
     /**
      * @return if the storage tube is empty
      */
     public boolean isEmpty(){
-        return tube.isEmpty();
+        return size == 0;
     }
-    
+
     /**
      * @return the first item in the storage tube (without removing it)
      */
     public MailItem peek() {
-    	return tube.peek();
+        if (size == 0) throw new EmptyStackException();
+    	return tube[size - 1];
     }
 
     /**
@@ -63,28 +70,69 @@ public class StorageTube {
      * exceeds the capacity
      */
     public void addItem(MailItem item) throws TubeFullException {
-        if (item.getFragile()) fragileCount++;
-        if(tube.size() < maximumTubeSize){
-        	tube.add(item);
+        if(size < maximumTubeSize){
+        	tube[size++] = item;
         } else {
             throw new TubeFullException();
         }
+        if (item.getFragile()) fragileCount++;
+        if (isHeavy(item)) heavyCount++;
     }
 
     /** @return the size of the tube **/
     public int getSize(){
-    	return tube.size();
+    	return size;
     }
-    
-    /** 
+
+    /**
      * @return the first item in the storage tube (after removing it)
      */
     public MailItem pop(){
-        return tube.pop();
+        MailItem item = peek();
+        tube[--size] = null;
+        if (item.getFragile()) fragileCount--;
+        if (isHeavy(item)) heavyCount--;
+        return item;
+    }
+
+    /**
+     * Gets an item without removing it, in the order items come off the tube
+     * @param index 0 for the item on top, up to getSize() - 1 for the bottom
+     * @return the item
+     */
+    public MailItem get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        return tube[size - 1 - index];
+    }
+
+    /**
+     * Reorders the items so that they come off the tube in the given order
+     * @param deliveryOrder the order in which items should be popped
+     */
+    public void sortForDelivery(Comparator<MailItem> deliveryOrder) {
+        // Insertion sort, stable and in place; the top is the last element
+        for (int i = 1; i < size; i++) {
+            MailItem item = tube[i];
+            int j = i - 1;
+            while (j >= 0 && deliveryOrder.compare(tube[j], item) < 0) {
+                tube[j + 1] = tube[j];
+                j--;
+            }
+            tube[j + 1] = item;
+        }
+    }
+
+    private static boolean isHeavy(MailItem item) {
+        return item.getWeight() >= WeakRobot.WEAK_ROBOT_MAX_WEIGHT;
     }
 
     public void setMaximumTubeSize(int maximumTubeSize) {
         this.maximumTubeSize = maximumTubeSize;
+        if (tube.length < maximumTubeSize) {
+            tube = Arrays.copyOf(tube, maximumTubeSize);
+        }
     }
 
     public int getMaximumTubeSize() {
@@ -94,4 +142,8 @@ public class StorageTube {
     public int getFragileCount() {
         return fragileCount;
     }
+
+    public int getHeavyCount() {
+        return heavyCount;
+    }
 }
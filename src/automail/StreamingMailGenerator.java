@@ -0,0 +1,221 @@
+package automail;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import exceptions.NoValidRobotsAvailableException;
+import strategies.IMailPool;
+
+/**
+ * Generates the same mail as MailGenerator, in the same order and with the
+ * same numbers, but without holding all of it at once.
+ * The seeded Random is run through once, keeping only the fields of each
+ * item packed into arrays of ints, sorted by arrival time. Mail items are
+ * made from them a window of ticks at a time, so only one window's items
+ * are ever held as objects; a window of one tick holds only one tick's
+ * arrivals.
+ */
+public class StreamingMailGenerator extends MailGenerator {
+
+    /** How the fields other than the floor are packed into one int */
+    private static final int WEIGHT_BITS = 13;
+    private static final int LEVEL_BITS = 7;
+    private static final int WEIGHT_MASK = (1 << WEIGHT_BITS) - 1;
+    private static final int LEVEL_MASK = (1 << LEVEL_BITS) - 1;
+    private static final int FRAGILE = 1 << (WEIGHT_BITS + LEVEL_BITS);
+    private static final int PRIORITY = FRAGILE << 1;
+
+    private final long seed;
+    private final int mailToCreate;
+    private final int window;
+
+    /** The first item of each tick, then the total, from tick 0 on */
+    private int[] firstOfTick;
+    /** The number of each item, in order of arrival */
+    private int[] numbers;
+    /** The destination floor of each item, in order of arrival */
+    private int[] floors;
+    /** The weight, priority level and flags of each item, packed */
+    private int[] fields;
+
+    /** The first tick of the current window */
+    private int windowStart;
+    /** The first tick after the current window */
+    private int windowEnd;
+    /** The mail of the current window, in order of arrival */
+    private MailItem[] windowMail = new MailItem[0];
+    /** The first tick not yet past with mail arriving */
+    private int nextArrival;
+
+    /**
+     * Constructor for streaming mail generation
+     * @param mailToCreate roughly how many mail items to create
+     * @param mailPool where mail items go on arrival
+     * @param seed random seed for generating mail
+     * @param fragile whether fragile mail is made
+     * @param window how many ticks of mail to hold at once
+     * @param context the simulation run the mail belongs to
+     */
+    public StreamingMailGenerator(int mailToCreate, IMailPool mailPool,
+                                  HashMap<Boolean,Integer> seed,
+                                  boolean fragile, int window,
+                                  SimulationContext context){
+        this(mailToCreate, mailPool, fragile, window, context, withSeed(seed));
+    }
+
+    private StreamingMailGenerator(int mailToCreate, IMailPool mailPool,
+                                   boolean fragile, int window,
+                                   SimulationContext context,
+                                   HashMap<Boolean,Integer> seed){
+        super(mailToCreate, mailPool, seed, fragile, context);
+        this.seed = seed.get(true);
+        this.mailToCreate = mailToCreate;
+        this.window = window;
+    }
+
+    /**
+     * A replay needs a seed, so pick one if none was given.
+     * @param seed the seed given
+     * @return a seed map holding a seed
+     */
+    private static HashMap<Boolean,Integer> withSeed(
+            HashMap<Boolean,Integer> seed){
+        if (seed.containsKey(true)) return seed;
+        HashMap<Boolean,Integer> seeded = new HashMap<>();
+        seeded.put(true, new Random().nextInt());
+        return seeded;
+    }
+
+    /**
+     * Draws all the mail once from the seed, keeping only its fields.
+     */
+    @Override
+    public void generateAllMail(){
+        int lastTick = context.CLOCK.LAST_DELIVERY_TIME;
+        int[] arrivals = new int[MAIL_TO_CREATE];
+        int[] drawnFloors = new int[MAIL_TO_CREATE];
+        int[] drawnFields = new int[MAIL_TO_CREATE];
+        boolean[] priorityAt = new boolean[lastTick + 1];
+        firstOfTick = new int[lastTick + 2];
+
+        Random random = new Random(seed);
+        // The draw deciding how much mail to make
+        random.nextInt(mailToCreate*2/5);
+        for (int number = 0; number < MAIL_TO_CREATE; number++) {
+            drawMail(random);
+            // Only one priority item per arrival time
+            boolean priority = drawnPriority && !priorityAt[drawnArrival];
+            if (priority) priorityAt[drawnArrival] = true;
+            arrivals[number] = drawnArrival;
+            drawnFloors[number] = drawnFloor;
+            drawnFields[number] = drawnWeight |
+                    drawnPriorityLevel << WEIGHT_BITS |
+                    (drawnFragile ? FRAGILE : 0) | (priority ? PRIORITY : 0);
+            firstOfTick[drawnArrival + 1]++;
+        }
+
+        // Sorted by arrival, keeping the order they were drawn in
+        for (int tick = 0; tick <= lastTick; tick++) {
+            firstOfTick[tick + 1] += firstOfTick[tick];
+        }
+        int[] next = firstOfTick.clone();
+        numbers = new int[MAIL_TO_CREATE];
+        floors = new int[MAIL_TO_CREATE];
+        fields = new int[MAIL_TO_CREATE];
+        for (int number = 0; number < MAIL_TO_CREATE; number++) {
+            int i = next[arrivals[number]]++;
+            numbers[i] = number;
+            floors[i] = drawnFloors[number];
+            fields[i] = drawnFields[number];
+        }
+        windowStart = 0;
+        windowEnd = 0;
+        nextArrival = 0;
+    }
+
+    /**
+     * Moves the window on once the clock has passed it, making the items
+     * arriving in the new window.
+     * @param now the current time
+     */
+    private void advanceWindow(int now){
+        if (now < windowEnd) return;
+        int lastTick = firstOfTick.length - 2;
+        windowStart = Math.min(now, lastTick + 1);
+        windowEnd = (int) Math.min((long) now + window, lastTick + 1);
+        int first = firstOfTick[windowStart];
+        windowMail = new MailItem[firstOfTick[windowEnd] - first];
+        for (int tick = windowStart; tick < windowEnd; tick++) {
+            for (int i = firstOfTick[tick]; i < firstOfTick[tick + 1]; i++) {
+                windowMail[i - first] = itemAt(i, tick);
+            }
+        }
+    }
+
+    /**
+     * Makes the mail item kept at an index.
+     * @param i the index of the item, in order of arrival
+     * @param arrival the arrival time of the item
+     * @return the mail item
+     */
+    private MailItem itemAt(int i, int arrival){
+        int packed = fields[i];
+        int weight = packed & WEIGHT_MASK;
+        boolean fragile = (packed & FRAGILE) != 0;
+        if ((packed & PRIORITY) != 0) {
+            return new PriorityMailItem(numbers[i], floors[i], arrival,
+                    weight, fragile, packed >>> WEIGHT_BITS & LEVEL_MASK);
+        }
+        return new MailItem(numbers[i], floors[i], arrival, weight, fragile);
+    }
+
+    @Override
+    public PriorityMailItem step() throws NoValidRobotsAvailableException {
+        PriorityMailItem priority = null;
+        int now = context.CLOCK.Time();
+        if (now < 0 || now >= firstOfTick.length - 1) return null;
+        advanceWindow(now);
+        int first = firstOfTick[windowStart];
+        for (int i = firstOfTick[now]; i < firstOfTick[now + 1]; i++) {
+            MailItem mailItem = windowMail[i - first];
+            // The item is the pool's now
+            windowMail[i - first] = null;
+            if (mailItem instanceof PriorityMailItem) priority =
+                    ((PriorityMailItem) mailItem);
+            context.EVENTS.mailArrived(now, mailItem);
+            mailPool.addToPool(mailItem);
+        }
+        return priority;
+    }
+
+    /**
+     * Counts the items arriving in the coming ticks, from the arrival times
+     * kept.
+     */
+    @Override
+    public double expectedArrivals(int ticks){
+        int now = context.CLOCK.Time();
+        return itemsBefore((long) now + ticks + 1) - itemsBefore(now + 1);
+    }
+
+    /**
+     * @return the number of items arriving before a tick
+     */
+    private int itemsBefore(long tick){
+        return firstOfTick[(int) Math.max(0, Math.min(tick,
+                firstOfTick.length - 1))];
+    }
+
+    @Override
+    public int ticksUntilNextArrival(){
+        int now = context.CLOCK.Time();
+        int lastTick = firstOfTick.length - 2;
+        if (nextArrival < now) nextArrival = now;
+        while (nextArrival <= lastTick &&
+                firstOfTick[nextArrival] == firstOfTick[nextArrival + 1]) {
+            nextArrival++;
+        }
+        if (nextArrival > lastTick) return Integer.MAX_VALUE;
+        return nextArrival - now;
+    }
+}
@@ -0,0 +1,55 @@
+package automail;
+
+import java.io.PrintStream;
+
+/**
+ * Prints every event straight away, exactly as the simulation always has.
+ */
+public class TextEventSink implements EventSink {
+
+    private final PrintStream out;
+
+    /**
+     * Instantiates a new TextEventSink.
+     *
+     * @param out where to print the events
+     */
+    public TextEventSink(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void mailArrived(int time, MailItem mailItem) {
+        out.print(EventFormat.mailArrived(time, mailItem));
+    }
+
+    @Override
+    public void mailReturned(int time, MailItem mailItem) {
+        out.print(EventFormat.mailReturned(time, mailItem));
+    }
+
+    @Override
+    public void stateChanged(int time, String robotId, int tubeSize,
+                             int tubeCapacity, Robot.RobotState from,
+                             Robot.RobotState to) {
+        out.print(EventFormat.stateChanged(time, robotId, tubeSize,
+                tubeCapacity, from, to));
+    }
+
+    @Override
+    public void routeSet(int time, String robotId, int tubeSize,
+                         int tubeCapacity, MailItem mailItem) {
+        out.print(EventFormat.routeSet(time, robotId, tubeSize, tubeCapacity,
+                mailItem));
+    }
+
+    @Override
+    public void delivered(int time, MailItem mailItem) {
+        out.print(EventFormat.delivered(time, mailItem));
+    }
+
+    @Override
+    public void close() {
+        out.flush();
+    }
+}
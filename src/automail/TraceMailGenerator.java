@@ -0,0 +1,143 @@
+package automail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import exceptions.NoValidRobotsAvailableException;
+import strategies.IMailPool;
+
+/**
+ * Feeds the mail pool from a trace of real arrivals instead of making mail
+ * up. Only the next item of the trace is held at a time, so a trace of any
+ * length runs in the same memory.
+ * Items are numbered in trace order. Items arriving before the clock's time
+ * when the feed starts are skipped, as for a run restored from a snapshot.
+ * An item for a floor the building does not have stops the run.
+ */
+public class TraceMailGenerator extends MailGenerator {
+
+    /** Marks that no more mail will arrive */
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final MailTrace trace;
+    /** The arrival time of the next item, or NONE */
+    private int nextArrival;
+    private boolean started;
+    /** How fast mail has been arriving lately */
+    private final ArrivalRate rate = new ArrivalRate();
+
+    /**
+     * Constructor for mail from a trace
+     * @param trace the trace, before its first item
+     * @param mailPool where mail items go on arrival
+     * @param context the simulation run the mail belongs to
+     * @throws IOException if the trace can not be read
+     */
+    public TraceMailGenerator(MailTrace trace, IMailPool mailPool,
+                              SimulationContext context) throws IOException {
+        super(Math.toIntExact(trace.count()), mailPool, context);
+        this.trace = trace;
+        this.nextArrival = trace.next() ? checkFloor() : NONE;
+        this.started = false;
+    }
+
+    /**
+     * Checks that the building has the current item's floor.
+     * @return the arrival time of the current item
+     * @throws IOException if the building has no such floor
+     */
+    private int checkFloor() throws IOException {
+        if (trace.getFloor() > context.BUILDING.FLOORS) {
+            throw new IOException(trace.position() + ": floor " +
+                    trace.getFloor() + " is not in a building of " +
+                    context.BUILDING.FLOORS + " floors");
+        }
+        return trace.getArrival();
+    }
+
+    /**
+     * Nothing is made up front; each item is read when it arrives.
+     */
+    @Override
+    public void generateAllMail(){
+    }
+
+    /**
+     * Reads the item after the current one.
+     */
+    private void advance(){
+        try {
+            int previous = nextArrival;
+            nextArrival = trace.next() ? checkFloor() : NONE;
+            if (nextArrival < previous) {
+                throw new IllegalStateException(trace.position() + ": mail " +
+                        "trace is not in order of arrival at " + nextArrival);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Skips the items which arrived before the feed started.
+     * @param now the current time
+     */
+    private void start(int now){
+        if (started) return;
+        started = true;
+        while (nextArrival < now) {
+            context.MAIL_IDS.next();
+            advance();
+        }
+    }
+
+    @Override
+    public PriorityMailItem step() throws NoValidRobotsAvailableException {
+        PriorityMailItem priority = null;
+        int now = context.CLOCK.Time();
+        start(now);
+        int arrivals = 0;
+        while (nextArrival == now) {
+            arrivals++;
+            MailItem mailItem = trace.getPriority() > 0 ?
+                    new PriorityMailItem(context.MAIL_IDS.next(),
+                            trace.getFloor(), now, trace.getWeight(),
+                            trace.getFragile(), trace.getPriority()) :
+                    new MailItem(context.MAIL_IDS.next(), trace.getFloor(),
+                            now, trace.getWeight(), trace.getFragile());
+            if (mailItem instanceof PriorityMailItem) priority =
+                    ((PriorityMailItem) mailItem);
+            context.EVENTS.mailArrived(now, mailItem);
+            mailPool.addToPool(mailItem);
+            advance();
+        }
+        rate.count(now, arrivals);
+        return priority;
+    }
+
+    /**
+     * Estimates the mail to come from the moving average of recent
+     * arrivals, as only the next item of the trace is known.
+     */
+    @Override
+    public double expectedArrivals(int ticks){
+        return rate.perTick(context.CLOCK.Time()) * ticks;
+    }
+
+    @Override
+    public int ticksUntilNextArrival(){
+        int now = context.CLOCK.Time();
+        start(now);
+        if (nextArrival == NONE) return Integer.MAX_VALUE;
+        return nextArrival - now;
+    }
+
+    @Override
+    public void close(){
+        try {
+            trace.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -24,9 +24,11 @@ public class WeakRobot extends Robot {
      *
      * @param delivery governs the final delivery
      * @param mailPool is the source of mail items
+     * @param context  is the simulation run the robot belongs to
      */
-    public WeakRobot(IMailDelivery delivery, IMailPool mailPool) {
+    public WeakRobot(IMailDelivery delivery, IMailPool mailPool,
+                     SimulationContext context) {
         // weak robots have limits in its maximum weight
-        super(delivery, mailPool, Automail.WEAK);
+        super(delivery, mailPool, Automail.WEAK, context);
     }
 }
@@ -0,0 +1,16 @@
+package strategies;
+
+/**
+ * Tells how much mail is expected to arrive soon, for a dispatch policy
+ * weighing up whether to wait for it.
+ */
+public interface ArrivalForecast {
+
+    /**
+     * Gets how many items are expected to arrive after the current tick.
+     *
+     * @param ticks how many ticks ahead to look
+     * @return the expected number of items arriving in that time
+     */
+    double expectedArrivals(int ticks);
+}
@@ -16,6 +16,7 @@ public class Automail {
 	      
     public final DelivererBehaviour[] ROBOTS;
     public final IMailPool MAIL_POOL;
+    private final SimulationContext context;
     // Can't handle packages heavier than the weak robots limit
     public static final boolean WEAK= false;
 
@@ -27,18 +28,31 @@ public class Automail {
      *
      * @param delivery     the delivery
      * @param robotsToMake the robots to make
+     * @param context      the simulation run the robots belong to
      * @throws InvalidRobotTypeException the invalid robot type exception
      */
     public Automail(IMailDelivery delivery, String mailPoolName,
-                    List<Simulation.RobotType> robotsToMake) throws
-            InvalidRobotTypeException, ClassNotFoundException,
-            IllegalAccessException, InstantiationException {
+                    List<Simulation.RobotType> robotsToMake,
+                    SimulationContext context) throws
+            InvalidRobotTypeException, ClassNotFoundException {
+        this(delivery, makeMailPool(mailPoolName), robotsToMake, context);
+    }
 
-        /**
-         * Created the mail pool
-         */
-        MAIL_POOL = (IMailPool) Class.forName(mailPoolName).
-                newInstance();
+    /**
+     * Instantiates a new Automail around a mail pool already made.
+     *
+     * @param delivery     the delivery
+     * @param mailPool     the mail pool
+     * @param robotsToMake the robots to make
+     * @param context      the simulation run the robots belong to
+     * @throws InvalidRobotTypeException the invalid robot type exception
+     */
+    public Automail(IMailDelivery delivery, IMailPool mailPool,
+                    List<Simulation.RobotType> robotsToMake,
+                    SimulationContext context) throws
+            InvalidRobotTypeException {
+        this.context = context;
+        MAIL_POOL = mailPool;
 
     	/**
          * Initialize robots
@@ -50,6 +64,18 @@ public class Automail {
 
     }
 
+    /**
+     * Makes a mail pool through the strategy registry.
+     *
+     * @param mailPoolName the name of the strategy, or of its class
+     * @return the mail pool
+     * @throws ClassNotFoundException if there is no such strategy
+     */
+    public static IMailPool makeMailPool(String mailPoolName) throws
+            ClassNotFoundException {
+        return MailPools.create(mailPoolName);
+    }
+
     /**
      * Make the requested deliverers.
      *
@@ -66,13 +92,13 @@ public class Automail {
         // create robots based on the designated type
         switch(robotType){
             case Big:
-                return new BigRobot(delivery, MAIL_POOL);
+                return new BigRobot(delivery, MAIL_POOL, context);
             case Weak:
-                return new WeakRobot(delivery, MAIL_POOL);
+                return new WeakRobot(delivery, MAIL_POOL, context);
             case Careful:
-                return new CarefulRobot(delivery, MAIL_POOL);
+                return new CarefulRobot(delivery, MAIL_POOL, context);
             case Standard:
-                return new StandardRobot(delivery, MAIL_POOL);
+                return new StandardRobot(delivery, MAIL_POOL, context);
             default:
                 throw new InvalidRobotTypeException();
         }
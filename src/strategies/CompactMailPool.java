@@ -0,0 +1,357 @@
+/**
+ * Project Group 23
+ */
+
+package strategies;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeMap;
+
+import automail.*;
+import exceptions.NoValidRobotsAvailableException;
+import exceptions.TubeFullException;
+import exceptions.FragileItemBrokenException;
+
+/**
+ * The same strategy as {@link MyMailPool}, for pools holding a very large
+ * number of waiting items.
+ * Instead of keeping each MailItem, the pool keeps the fields of its items
+ * in parallel primitive arrays, about 25 bytes an item, and only builds
+ * MailItem objects again for the items it loads into a robot's tube.
+ * Mail items are told apart by their number, so a rebuilt item counts as
+ * the item that arrived.
+ */
+public class CompactMailPool implements IMailPool {
+
+	/**
+	 * Registers the strategy as CompactMailPool.
+	 */
+	public static class Factory implements MailPoolFactory {
+		@Override
+		public String name() {
+			return "CompactMailPool";
+		}
+
+		@Override
+		public IMailPool create() {
+			return new CompactMailPool();
+		}
+	}
+
+	/** Marks the end of a bucket's list of slots */
+	private static final int END = -1;
+
+	/**
+	 * The fields of the items, one slot per item. A slot is either in the
+	 * list of a bucket or in the list of free slots, linked through next.
+	 */
+	private int[] number;
+	private int[] arrival;
+	private int[] destination;
+	private int[] weight;
+	private int[] priority;
+	private boolean[] fragile;
+	private int[] next;
+	/** The first unused slot */
+	private int free;
+
+	/**
+	 * The slots sharing one priority level and destination, oldest first.
+	 */
+	private class Bucket {
+		int head = END;
+		int tail = END;
+		/** How many items of the bucket are not heavy */
+		int lightCount;
+		/** How many items of the bucket are not fragile */
+		int plainCount;
+	}
+
+	/**
+	 * One bucket per priority level and destination, highest ranked first,
+	 * in the order {@link MyMailPool.ItemComparator} gives.
+	 */
+	private TreeMap<Long, Bucket> pool;
+	private LinkedList<Robot> robots;
+	private int lightCount;
+	private int size;
+	/**
+	 * Whether an item was added or a robot registered since the last step.
+	 * Until then another step would load nothing new, so it is skipped.
+	 */
+	private boolean changed;
+	/**
+	 * The slots picked for the robot being loaded, highest ranked first.
+	 * Reused for every robot, so loading allocates nothing but the items.
+	 */
+	private int[] staged = new int[0];
+
+	private boolean carefulRobotExists = false;
+	private boolean strongRobotExists = false;
+
+	/**
+	 * Instantiates a new compact mail pool.
+	 */
+	public CompactMailPool(){
+		// Start empty
+		pool = new TreeMap<Long, Bucket>();
+		robots = new LinkedList<Robot>();
+		lightCount = 0;
+		size = 0;
+		grow(64);
+	}
+
+	/**
+	 * Makes room for more items, chaining the new slots into the free list.
+	 *
+	 * @param capacity the new number of slots
+	 */
+	private void grow(int capacity) {
+		int old = number == null ? 0 : number.length;
+		number = number == null ? new int[capacity] :
+				Arrays.copyOf(number, capacity);
+		arrival = arrival == null ? new int[capacity] :
+				Arrays.copyOf(arrival, capacity);
+		destination = destination == null ? new int[capacity] :
+				Arrays.copyOf(destination, capacity);
+		weight = weight == null ? new int[capacity] :
+				Arrays.copyOf(weight, capacity);
+		priority = priority == null ? new int[capacity] :
+				Arrays.copyOf(priority, capacity);
+		fragile = fragile == null ? new boolean[capacity] :
+				Arrays.copyOf(fragile, capacity);
+		next = next == null ? new int[capacity] :
+				Arrays.copyOf(next, capacity);
+		for (int slot = old; slot < capacity - 1; slot++) {
+			next[slot] = slot + 1;
+		}
+		next[capacity - 1] = END;
+		free = old;
+	}
+
+	/**
+	 * The key of the bucket for an item, larger keys being dispatched first.
+	 * Items without a priority rank as priority 1.
+	 *
+	 * @param priorityLevel the priority level, or 0 for none
+	 * @param destination   the destination floor
+	 * @return the key
+	 */
+	private static long bucketKey(int priorityLevel, int destination) {
+		// Any floor fits below the priority level without reordering it
+		return ((long) Math.max(priorityLevel, 1) << 32) + destination;
+	}
+
+	private boolean heavy(int slot) {
+		return weight[slot] >= WeakRobot.WEAK_ROBOT_MAX_WEIGHT;
+	}
+
+	public void addToPool(MailItem mailItem)
+			throws NoValidRobotsAvailableException {
+		if (mailItem.getFragile() && !carefulRobotExists){
+			// checking if there is careful robot to deliver fragile items
+			throw new NoValidRobotsAvailableException("Careful");
+		}
+		if (free == END) grow(number.length * 2);
+		int slot = free;
+		free = next[slot];
+
+		number[slot] = mailItem.hashCode();
+		arrival[slot] = mailItem.getArrivalTime();
+		destination[slot] = mailItem.getDestFloor();
+		weight[slot] = mailItem.getWeight();
+		fragile[slot] = mailItem.getFragile();
+		priority[slot] = (mailItem instanceof PriorityMailItem) ?
+				((PriorityMailItem) mailItem).getPriorityLevel() : 0;
+		next[slot] = END;
+
+		long key = bucketKey(priority[slot], destination[slot]);
+		Bucket bucket = pool.get(key);
+		if (bucket == null) {
+			bucket = new Bucket();
+			pool.put(key, bucket);
+		}
+		if (bucket.tail == END) {
+			bucket.head = slot;
+		} else {
+			next[bucket.tail] = slot;
+		}
+		bucket.tail = slot;
+		if (!fragile[slot]) bucket.plainCount++;
+		size++;
+		changed = true;
+
+		if (!heavy(slot)) {
+			bucket.lightCount++;
+			lightCount++;
+		} else if (!strongRobotExists){
+			// checking if there is strong robot to deliver heavy items
+			throw new NoValidRobotsAvailableException("Strong");
+		}
+	}
+
+	/**
+	 * Builds the mail item held in a slot.
+	 *
+	 * @param slot the slot
+	 * @return the mail item
+	 */
+	private MailItem toMailItem(int slot) {
+		if (priority[slot] > 0) {
+			return new PriorityMailItem(number[slot], destination[slot],
+					arrival[slot], weight[slot], fragile[slot],
+					priority[slot]);
+		}
+		return new MailItem(number[slot], destination[slot], arrival[slot],
+				weight[slot], fragile[slot]);
+	}
+
+	/**
+	 * Takes a slot out of its bucket and hands it back to the free list.
+	 *
+	 * @param bucket   the bucket holding the slot
+	 * @param previous the slot before it in the bucket, or END
+	 * @param slot     the slot
+	 */
+	private void unlink(Bucket bucket, int previous, int slot) {
+		int following = next[slot];
+		if (previous == END) {
+			bucket.head = following;
+		} else {
+			next[previous] = following;
+		}
+		if (bucket.tail == slot) bucket.tail = previous;
+		if (!heavy(slot)) {
+			bucket.lightCount--;
+			lightCount--;
+		}
+		if (!fragile[slot]) bucket.plainCount--;
+		next[slot] = free;
+		free = slot;
+		size--;
+	}
+
+	@Override
+	public void step() throws FragileItemBrokenException {
+		if (!changed) return;
+		changed = false;
+		for (Robot robot: (Iterable<Robot>) robots::iterator) {
+			if (size == 0) break;
+			fillStorageTube(robot);
+		}
+	}
+
+	private void fillStorageTube(Robot robot) throws FragileItemBrokenException{
+		StorageTube tube = robot.getTube();
+		boolean careful = robot instanceof CarefulRobot;
+		if (staged.length < robot.getMaxItems()) {
+			staged = new int[robot.getMaxItems()];
+		}
+		int count = 0;
+		int fragileCount = 0;
+
+		// Get as many items as available or as fit
+		try {
+			Iterator<Bucket> b = pool.descendingMap().values().iterator();
+
+			fill:
+			while(count < robot.getMaxItems() && b.hasNext()){
+				Bucket bucket = b.next();
+
+				// skip buckets with nothing this robot can take
+				boolean fragileAllowed = careful && fragileCount <
+						((CarefulRobot) robot).MAX_FRAGILE_ITEMS;
+				if (!fragileAllowed && bucket.plainCount == 0) continue;
+				if (!robot.isStrong()) {
+					if (lightCount <= 0) break;
+					if (bucket.lightCount == 0) continue;
+				}
+
+				int previous = END;
+				int slot = bucket.head;
+				while(count < robot.getMaxItems() && slot != END){
+					int following = next[slot];
+
+					// skip fragile items this robot can not take
+					if(fragile[slot] && (!careful || fragileCount >=
+							((CarefulRobot) robot).MAX_FRAGILE_ITEMS)) {
+						previous = slot;
+						slot = following;
+						continue;
+					}
+
+					// adding certain mails to certain robot
+					if (robot.isStrong() || !heavy(slot)) {
+						if (!robot.isStrong() && lightCount <= 0) break fill;
+						// a freed slot keeps its fields until the next add
+						if (fragile[slot]) fragileCount++;
+						staged[count++] = slot;
+						unlink(bucket, previous, slot);
+					} else {
+						if (lightCount <= 0) break fill;
+						previous = slot;
+					}
+					slot = following;
+				}
+				if (bucket.head == END) b.remove();
+			}
+
+			// adding to robot's tube, highest ranked on top
+			if (count > 0) {
+				for (int i = count - 1; i >= 0; i--) {
+					tube.addItem(toMailItem(staged[i]));
+				}
+				robot.dispatch();
+			}
+
+		}
+		catch(TubeFullException e){
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void registerWaiting(Robot robot) {
+		changed = true;
+		// checking if necessary robots types exists in the lineup
+		if (robot instanceof CarefulRobot) carefulRobotExists = true;
+		if (robot.isStrong()) strongRobotExists = true;
+		robots.add(robot);
+	}
+
+	@Override
+	public void deregisterWaiting(Robot robot) {
+		robots.remove(robot);
+	}
+
+	@Override
+	public boolean canSnapshot() {
+		return true;
+	}
+
+	@Override
+	public List<MailItem> getWaitingItems() {
+		ArrayList<MailItem> waiting = new ArrayList<MailItem>(size);
+		for (Bucket bucket : pool.descendingMap().values()) {
+			for (int slot = bucket.head; slot != END; slot = next[slot]) {
+				waiting.add(toMailItem(slot));
+			}
+		}
+		return waiting;
+	}
+
+	@Override
+	public List<Robot> getWaitingRobots() {
+		return new ArrayList<Robot>(robots);
+	}
+
+	@Override
+	public boolean isIdle() {
+		return !changed || robots.isEmpty() || size == 0;
+	}
+
+}
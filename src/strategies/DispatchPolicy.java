@@ -0,0 +1,29 @@
+package strategies;
+
+import automail.MailItem;
+import automail.Robot;
+
+/**
+ * Decides whether a waiting robot sets off with the items the mail pool has
+ * picked for it, or is held in the mailroom for a fuller load.
+ * The pool asks only when the load would leave room in the tube, and puts
+ * the items back if the robot is held, asking again on its next step.
+ */
+public interface DispatchPolicy {
+
+    /**
+     * Decides whether to hold a robot rather than send it off now.
+     *
+     * @param robot      the robot being loaded
+     * @param items      the items picked for it, highest ranked first
+     * @param count      how many items were picked
+     * @param idleRobots how many other robots are waiting with empty tubes
+     * @return true to hold the robot
+     */
+    boolean hold(Robot robot, MailItem[] items, int count, int idleRobots);
+
+    /**
+     * Sends every robot off as soon as it has an item
+     */
+    DispatchPolicy NONE = (robot, items, count, idleRobots) -> false;
+}
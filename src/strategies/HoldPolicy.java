@@ -0,0 +1,94 @@
+package strategies;
+
+import java.util.Arrays;
+
+import automail.Clock;
+import automail.MailItem;
+import automail.PriorityMailItem;
+import automail.Robot;
+
+/**
+ * Holds a robot that would leave with room to spare for up to a window of
+ * ticks, while the mail expected in what is left of the window would fill
+ * its tube enough to be worth the wait.
+ *
+ * Waiting delays each item already picked by the ticks waited, weighted by
+ * its priority as the score is. Each item that arrives in time to go along
+ * is instead spared waiting in the pool for a robot to come back, about a
+ * round trip to the middle of the building. The robot is held while the
+ * second outweighs the first for some wait within the window, and never
+ * while another robot is idle in the mailroom to take the new mail.
+ */
+public class HoldPolicy implements DispatchPolicy {
+
+    /** Marks a robot not being held */
+    private static final int NOT_HELD = -1;
+
+    private final int window;
+    private final ArrivalForecast forecast;
+    private final Clock clock;
+    private final int roundTrip;
+    /** When each robot, by number, was first held, or NOT_HELD */
+    private int[] heldSince = new int[0];
+
+    /**
+     * Instantiates a new hold policy.
+     *
+     * @param window   the most ticks a robot is held for
+     * @param forecast the mail expected to arrive
+     * @param clock    the clock of the run
+     * @param floors   the number of floors of the building
+     */
+    public HoldPolicy(int window, ArrivalForecast forecast, Clock clock,
+                      int floors) {
+        this.window = window;
+        this.forecast = forecast;
+        this.clock = clock;
+        // Up to the middle floor and back again, on average
+        this.roundTrip = floors;
+    }
+
+    @Override
+    public boolean hold(Robot robot, MailItem[] items, int count,
+                        int idleRobots) {
+        int number = robot.hashCode();
+        if (number >= heldSince.length) {
+            int old = heldSince.length;
+            heldSince = Arrays.copyOf(heldSince, Math.max(number + 1,
+                    old * 2));
+            Arrays.fill(heldSince, old, heldSince.length, NOT_HELD);
+        }
+        int now = clock.Time();
+        int since = heldSince[number] == NOT_HELD ? now : heldSince[number];
+        int left = since + window - now;
+        int room = robot.getMaxItems() - count;
+        if (room <= 0 || left <= 0 || idleRobots > 0) {
+            heldSince[number] = NOT_HELD;
+            return false;
+        }
+
+        double delayed = 0;
+        for (int i = 0; i < count; i++) delayed += weight(items[i]);
+        // Hold if waiting some number of the ticks left would pay off
+        for (int ticks = 1; ticks <= left; ticks++) {
+            double spared = Math.min(room, forecast.expectedArrivals(ticks)) *
+                    roundTrip;
+            if (spared > delayed * ticks) {
+                heldSince[number] = since;
+                return true;
+            }
+        }
+        heldSince[number] = NOT_HELD;
+        return false;
+    }
+
+    /**
+     * @return how much each tick of delay to an item counts, as the score
+     * weighs it by priority
+     */
+    private static double weight(MailItem mailItem) {
+        int priority = mailItem instanceof PriorityMailItem ?
+                ((PriorityMailItem) mailItem).getPriorityLevel() : 0;
+        return 1 + Math.sqrt(priority);
+    }
+}
@@ -1,5 +1,7 @@
 package strategies;
 
+import java.util.List;
+
 import automail.MailItem;
 import automail.Robot;
 import exceptions.FragileItemBrokenException;
@@ -36,4 +38,69 @@ public interface IMailPool {
 	 *              deliver)
      */	
 	void deregisterWaiting(Robot robot);
+
+	/**
+	 * Tells whether step() would leave everything as it is, so that ticks
+	 * can be skipped until an item is added or a robot registers.
+	 * The default answers false, which never lets a tick be skipped.
+	 *
+	 * @return whether the next step would do nothing
+	 */
+	default boolean isIdle() {
+		return false;
+	}
+
+	/**
+	 * Tells whether the pool can hold a loaded robot for more mail, as a
+	 * dispatch policy asks. The default can not.
+	 *
+	 * @return whether setDispatchPolicy is supported
+	 */
+	default boolean canHold() {
+		return false;
+	}
+
+	/**
+	 * Sets what decides whether a loaded robot sets off or is held for more
+	 * mail. The default does not support holding robots.
+	 *
+	 * @param policy the dispatch policy
+	 */
+	default void setDispatchPolicy(DispatchPolicy policy) {
+		throw new UnsupportedOperationException(getClass().getName() +
+				" can not hold robots");
+	}
+
+	/**
+	 * Tells whether the pool can list what is waiting in it, so that a run
+	 * using it can be snapshot. The default can not.
+	 *
+	 * @return whether getWaitingItems and getWaitingRobots are supported
+	 */
+	default boolean canSnapshot() {
+		return false;
+	}
+
+	/**
+	 * Lists the items waiting in the pool, in an order such that adding them
+	 * to an empty pool in turn gives back the same pool. Used to snapshot a
+	 * run; the default does not support it.
+	 *
+	 * @return the waiting items
+	 */
+	default List<MailItem> getWaitingItems() {
+		throw new UnsupportedOperationException(getClass().getName() +
+				" can not list its waiting items");
+	}
+
+	/**
+	 * Lists the robots waiting to be loaded, in the order they are offered
+	 * items. Used to snapshot a run; the default does not support it.
+	 *
+	 * @return the waiting robots
+	 */
+	default List<Robot> getWaitingRobots() {
+		throw new UnsupportedOperationException(getClass().getName() +
+				" can not list its waiting robots");
+	}
 }
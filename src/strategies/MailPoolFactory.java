@@ -0,0 +1,24 @@
+package strategies;
+
+/**
+ * Makes the mail pools of one strategy. Factories are found through
+ * {@link java.util.ServiceLoader}, listed in
+ * META-INF/services/strategies.MailPoolFactory, and made once when the
+ * registry in {@link MailPools} is first used.
+ */
+public interface MailPoolFactory {
+
+    /**
+     * Gets the name the MailPool setting picks the strategy by.
+     *
+     * @return the name
+     */
+    String name();
+
+    /**
+     * Makes an empty mail pool.
+     *
+     * @return the mail pool
+     */
+    IMailPool create();
+}
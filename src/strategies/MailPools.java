@@ -0,0 +1,138 @@
+package strategies;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The mail pool strategies, by name.
+ *
+ * The strategies registered as services are loaded and checked once, when
+ * the registry is first used, so that a broken strategy fails at once
+ * rather than part way through a batch. Each can be picked by its name or
+ * by the name of its class. Any other IMailPool class with a public
+ * constructor taking no arguments can still be picked by class name; its
+ * constructor is looked up once, as a method handle, and kept.
+ * Making a pool after that costs no reflection.
+ */
+public final class MailPools {
+
+    /** The registered strategies, by name */
+    private static final Map<String, MailPoolFactory> REGISTERED = load();
+    /** Every strategy picked so far, by the name it was picked by */
+    private static final Map<String, MailPoolFactory> PICKED =
+            new ConcurrentHashMap<>(REGISTERED);
+
+    private MailPools() {
+    }
+
+    private static Map<String, MailPoolFactory> load() {
+        Map<String, MailPoolFactory> registered = new LinkedHashMap<>();
+        for (MailPoolFactory factory :
+                ServiceLoader.load(MailPoolFactory.class,
+                        MailPools.class.getClassLoader())) {
+            String name = factory.name();
+            IMailPool mailPool = factory.create();
+            if (mailPool == null) {
+                throw new IllegalStateException("Mail pool strategy " + name +
+                        " made no pool");
+            }
+            if (registered.putIfAbsent(name, factory) != null) {
+                throw new IllegalStateException("Two mail pool strategies " +
+                        "are named " + name);
+            }
+            // Also by class name, as the MailPool setting used to give it
+            registered.putIfAbsent(mailPool.getClass().getName(), factory);
+        }
+        return Collections.unmodifiableMap(registered);
+    }
+
+    /**
+     * Gets the names the registered strategies can be picked by.
+     *
+     * @return the names, with the class name following each strategy's name
+     */
+    public static Set<String> names() {
+        return REGISTERED.keySet();
+    }
+
+    /**
+     * Gets the factory of a strategy.
+     *
+     * @param name the name of the strategy, or of an IMailPool class
+     * @return the factory
+     * @throws ClassNotFoundException if there is no such strategy or class
+     */
+    public static MailPoolFactory factory(String name)
+            throws ClassNotFoundException {
+        MailPoolFactory factory = PICKED.get(name);
+        if (factory == null) {
+            factory = byClassName(name);
+            MailPoolFactory raced = PICKED.putIfAbsent(name, factory);
+            if (raced != null) factory = raced;
+        }
+        return factory;
+    }
+
+    /**
+     * Makes an empty mail pool.
+     *
+     * @param name the name of the strategy, or of an IMailPool class
+     * @return the mail pool
+     * @throws ClassNotFoundException if there is no such strategy or class
+     */
+    public static IMailPool create(String name)
+            throws ClassNotFoundException {
+        return factory(name).create();
+    }
+
+    /**
+     * Makes a factory calling the constructor of an IMailPool class which
+     * was not registered.
+     */
+    private static MailPoolFactory byClassName(String name)
+            throws ClassNotFoundException {
+        Class<?> type;
+        try {
+            type = Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new ClassNotFoundException("No mail pool strategy " + name +
+                    "; there are " + names(), e);
+        }
+        if (!IMailPool.class.isAssignableFrom(type)) {
+            throw new ClassNotFoundException(name + " is not an IMailPool");
+        }
+        MethodHandle constructor;
+        try {
+            constructor = MethodHandles.publicLookup().findConstructor(type,
+                    MethodType.methodType(void.class)).asType(
+                    MethodType.methodType(IMailPool.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ClassNotFoundException(name + " has no public " +
+                    "constructor taking no arguments", e);
+        }
+        return new MailPoolFactory() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public IMailPool create() {
+                try {
+                    return (IMailPool) constructor.invokeExact();
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalStateException("Can not make " + name, e);
+                }
+            }
+        };
+    }
+}
@@ -4,9 +4,11 @@
 
 package strategies;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.ListIterator;
+import java.util.List;
+import java.util.TreeSet;
 
 import automail.*;
 import exceptions.NoValidRobotsAvailableException;
@@ -18,6 +20,22 @@ import exceptions.FragileItemBrokenException;
  * deliver
  */
 public class MyMailPool implements IMailPool {
+
+	/**
+	 * Registers the strategy as MyMailPool.
+	 */
+	public static class Factory implements MailPoolFactory {
+		@Override
+		public String name() {
+			return "MyMailPool";
+		}
+
+		@Override
+		public IMailPool create() {
+			return new MyMailPool();
+		}
+	}
+
 	private class Item {
 		/**
 		 * The Priority level of an item.
@@ -39,6 +57,10 @@ public class MyMailPool implements IMailPool {
 		 * The Mail item.
 		 */
 		MailItem mailItem;
+		/**
+		 * When the item was added to the pool, counting items.
+		 */
+		long arrival;
 		// Use stable sort to keep arrival time relative positions
 
 		/**
@@ -79,84 +101,131 @@ public class MyMailPool implements IMailPool {
 		}
 	}
 	
-	private LinkedList<Item> pool;
-	private LinkedList<Robot> robots;
-	private int lightCount;
+	/**
+	 * The order items are dispatched in: by {@link ItemComparator}, and in
+	 * arrival order among items of equal rank, which is what the stable sort
+	 * of a single list used to give.
+	 */
+	private final Comparator<Item> dispatchOrder =
+			new ItemComparator().thenComparingLong(item -> item.arrival);
+
+	/**
+	 * The waiting items, split by what it takes to carry them, each in
+	 * dispatch order. A weak robot only looks at light items, a strong robot
+	 * at light and heavy ones, and a careful robot also at fragile ones.
+	 */
+	private TreeSet<Item> light;
+	private TreeSet<Item> heavy;
+	private TreeSet<Item> fragile;
+	private ArrayList<Robot> robots;
+	/**
+	 * The items picked for the robot being loaded, highest ranked first.
+	 * Reused for every robot, so loading allocates nothing.
+	 */
+	private Item[] staged = new Item[0];
+	private MailItem[] stagedMail = new MailItem[0];
+	/** Decides whether a robot with room to spare is held for more mail */
+	private DispatchPolicy policy = DispatchPolicy.NONE;
+	/** Whether a robot was held on the last step, to be looked at again */
+	private boolean holding;
+	/** Counts the items added, to keep items of equal rank in order */
+	private long arrivals;
+	/**
+	 * Whether an item was added or a robot registered since the last step.
+	 * Until then another step would load nothing new, so it is skipped.
+	 */
+	private boolean changed;
 
 	/**
 	 * Instantiates a new My mail pool.
 	 */
 	public MyMailPool(){
 		// Start empty
-		pool = new LinkedList<Item>();
-		lightCount = 0;
-		robots = new LinkedList<Robot>();
+		light = new TreeSet<Item>(dispatchOrder);
+		heavy = new TreeSet<Item>(dispatchOrder);
+		fragile = new TreeSet<Item>(dispatchOrder);
+		robots = new ArrayList<Robot>();
 	}
 
 	public void addToPool(MailItem mailItem)
 			throws NoValidRobotsAvailableException {
 		Item item = new Item(mailItem);
+		item.arrival = arrivals++;
         if (mailItem.getFragile() && !carefulRobotExists){
         	// checking if there is careful robot to deliver fragile items
         	throw new NoValidRobotsAvailableException("Careful");
         }
-        pool.add(item);
-        if (!item.heavy) {
-        	lightCount++;
-		} else if (item.heavy && !strongRobotExists){
+        queueOf(item).add(item);
+        changed = true;
+        if (item.heavy && !strongRobotExists){
         	// checking if there is strong robot to deliver heavy items
         	throw new NoValidRobotsAvailableException("Strong");
 		}
-        pool.sort(new ItemComparator());
 	}
 	
 	@Override
 	public void step() throws FragileItemBrokenException {
-		for (Robot robot: (Iterable<Robot>) robots::iterator) {
-			fillStorageTube(robot);
+		if (!changed) return;
+		changed = false;
+		holding = false;
+		for (int i = 0; i < robots.size(); i++) {
+			if (isEmpty()) break;
+			fillStorageTube(robots.get(i));
 		}
+		// A held robot is offered the pool again on the next step
+		if (holding) changed = true;
+	}
+
+	private boolean isEmpty() {
+		return light.isEmpty() && heavy.isEmpty() && fragile.isEmpty();
 	}
 	
 	private void fillStorageTube(Robot robot) throws FragileItemBrokenException{
 		StorageTube tube = robot.getTube();
-		StorageTube temp = new StorageTube(tube.getMaximumTubeSize());
+		boolean careful = robot instanceof CarefulRobot;
+		if (staged.length < robot.getMaxItems()) {
+			staged = new Item[robot.getMaxItems()];
+			stagedMail = new MailItem[robot.getMaxItems()];
+		}
+		int size = 0;
+		int fragileCount = 0;
 
 		// Get as many items as available or as fit
 		try {
-			// To iterate through the pool
-			ListIterator<Item> i = pool.listIterator();
-
-			while(temp.getSize() < robot.getMaxItems() && !pool.isEmpty() &&
-					i.hasNext()){
-				Item item = i.next();
-
+			while(size < robot.getMaxItems()){
 				/**
-				 * if item is fragile and the robot is not a certain type
-				 * that can handle it, or if the robot can not carry anymore
-				 * fragile items, it will iterate to the next mail.
+				 * take the highest ranked item among the queues of items the
+				 * robot can carry; fragile items only while a careful robot
+				 * can still take more of them.
 				 */
-				if(item.fragile && (!(robot instanceof CarefulRobot) ||
-						temp.getFragileCount() >=
-						((CarefulRobot) robot).MAX_FRAGILE_ITEMS)) continue;
-
-				// adding certain mails to certain robot
-				if (robot.isStrong()){
-					temp.addItem(item.mailItem);
-					if (!item.heavy) lightCount--;
-					i.remove();
-				} else {
-					if (lightCount <= 0) break;
-					if (!item.heavy) {
-						temp.addItem(item.mailItem);
-						i.remove();
-						lightCount--;
-					}
+				boolean fragileAllowed = careful && fragileCount <
+						((CarefulRobot) robot).MAX_FRAGILE_ITEMS;
+				TreeSet<Item> queue = earlier(null, light);
+				if (robot.isStrong()) queue = earlier(queue, heavy);
+				if (fragileAllowed) queue = earlier(queue, fragile);
+				if (queue == null) break;
+				Item item = queue.pollFirst();
+				if (item.fragile) fragileCount++;
+				staged[size++] = item;
+			}
+
+			if (size > 0 && size < robot.getMaxItems() &&
+					policy != DispatchPolicy.NONE && hold(robot, size)) {
+				// put the items back where they were, for the next step
+				for (int i = 0; i < size; i++) {
+					queueOf(staged[i]).add(staged[i]);
+					staged[i] = null;
 				}
+				holding = true;
+				return;
 			}
 
-			// removing from temporary tube and adding to robot's tube
-			if (temp.getSize() > 0) {
-				while (!temp.isEmpty()) tube.addItem(temp.pop());
+			// adding to robot's tube, highest ranked on top
+			if (size > 0) {
+				for (int i = size - 1; i >= 0; i--) {
+					tube.addItem(staged[i].mailItem);
+					staged[i] = null;
+				}
 				robot.dispatch();
 			}
 
@@ -166,21 +235,58 @@ public class MyMailPool implements IMailPool {
 		}
 	}
 
+	/**
+	 * Asks the dispatch policy whether to hold a robot with the items staged
+	 * for it.
+	 *
+	 * @param robot the robot being loaded
+	 * @param size  how many items are staged
+	 * @return whether to hold the robot
+	 */
+	private boolean hold(Robot robot, int size) {
+		int idleRobots = 0;
+		for (Robot other : robots) {
+			if (other != robot && other.getTube().isEmpty()) idleRobots++;
+		}
+		for (int i = 0; i < size; i++) stagedMail[i] = staged[i].mailItem;
+		boolean hold = policy.hold(robot, stagedMail, size, idleRobots);
+		Arrays.fill(stagedMail, 0, size, null);
+		return hold;
+	}
+
+	/**
+	 * @return the queue an item waits in
+	 */
+	private TreeSet<Item> queueOf(Item item) {
+		if (item.fragile) return fragile;
+		return item.heavy ? heavy : light;
+	}
+
+	/**
+	 * Picks whichever of two queues has the item coming first in dispatch
+	 * order.
+	 *
+	 * @param first the queue picked so far, or null
+	 * @param queue the queue to compare with it
+	 * @return the queue picked, or null if both are empty
+	 */
+	private TreeSet<Item> earlier(TreeSet<Item> first, TreeSet<Item> queue) {
+		if (queue.isEmpty()) return first;
+		if (first == null ||
+				dispatchOrder.compare(queue.first(), first.first()) < 0) {
+			return queue;
+		}
+		return first;
+	}
+
 	@Override
 	public void registerWaiting(Robot robot) {
+		changed = true;
 
 		// checking if necessary robots types exists in the lineup
 		if (robot instanceof CarefulRobot) carefulRobotExists = true;
-		if (robot.isStrong()) {
-			robots.add(robot);
-			strongRobotExists = true;
-		} else {
-			/**
-			 *  weak robots last as want more efficient delivery with highest
-			 *  priorities
-			 */
-			robots.addLast(robot);
-		}
+		if (robot.isStrong()) strongRobotExists = true;
+		robots.add(robot);
 	}
 
 	@Override
@@ -188,4 +294,40 @@ public class MyMailPool implements IMailPool {
 		robots.remove(robot);
 	}
 
+	@Override
+	public boolean canHold() {
+		return true;
+	}
+
+	@Override
+	public void setDispatchPolicy(DispatchPolicy policy) {
+		this.policy = policy;
+	}
+
+	@Override
+	public boolean canSnapshot() {
+		return true;
+	}
+
+	@Override
+	public List<MailItem> getWaitingItems() {
+		ArrayList<Item> items = new ArrayList<Item>(light);
+		items.addAll(heavy);
+		items.addAll(fragile);
+		items.sort(Comparator.comparingLong(item -> item.arrival));
+		ArrayList<MailItem> waiting = new ArrayList<MailItem>(items.size());
+		for (Item item : items) waiting.add(item.mailItem);
+		return waiting;
+	}
+
+	@Override
+	public List<Robot> getWaitingRobots() {
+		return new ArrayList<Robot>(robots);
+	}
+
+	@Override
+	public boolean isIdle() {
+		return !changed || robots.isEmpty() || isEmpty();
+	}
+
 }